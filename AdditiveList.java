@@ -1,6 +1,11 @@
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.ListIterator;
+import java.util.Spliterator;
 import java.util.ConcurrentModificationException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 // AdditiveList class implements a doubly-linked list that is Iterable
 // and provides a ListIterator.  It provides some functionality that
@@ -33,17 +38,89 @@ public class AdditiveList<T> implements Iterable<T>{
   protected Node<T> endMarker;    // Dummy node marking the back of the list
   protected int modCount = 0;     // Tracks modifications for iterators
   
-  protected SimpleStack<Node<T>> undoable = new SimpleStack<Node<T>>();                               //mods here
-  protected SimpleStack<Node<T>> redoable = new SimpleStack<Node<T>>();
+  // History of adds, most recent on top. Both stacks keep at most
+  // maxUndo nodes; once undoable is full each add drops the oldest
+  // add from the history, which then can no longer be undone.
+  protected RingStack<Node<T>> undoable;                                                               //mods here
+  protected RingStack<Node<T>> redoable;
   
+  // Estimated size of a Node used by historyMemory(): an object
+  // header and three references
+  static final int NODE_BYTES = 16 + 3*RingStack.REF_BYTES;
   
-  // Construct an empty AdditiveList.
+  // Optional index from each element to the number of times it is in
+  // the list, kept current by add, undo and redo; null if the list
+  // was constructed without one.  Elements must then define hashCode()
+  // consistently with equals().
+  protected HashMap<Object,Integer> counts;
+  
+  // hashCode() of the list as of modification hashModCount. Appends
+  // and undos/redos of the last element update it in O(1); other
+  // modifications leave it stale until the next hashCode().
+  protected int cachedHash;
+  protected int hashModCount = -1;
+  static final int INV31 = 0xBDEF7BDF;  // 31*INV31 == 1 in int arithmetic
+  
+  // Markers delimiting groups of adds in the history; never linked
+  // into the list. groupDepth counts open beginGroup() calls.
+  protected final Node<T> GROUP_START = new Node<T>( null, null, null );
+  protected final Node<T> GROUP_END = new Node<T>( null, null, null );
+  protected int groupDepth = 0;
+  
+  // Optional pool of nodes whose adds were undone and then discarded
+  // from the redo history, linked through next. New adds take nodes
+  // from the pool before allocating. maxPooled is 0 when pooling is
+  // off.
+  protected Node<T> pool;
+  protected int pooled = 0, maxPooled = 0;
+  
+  // Checkpoints for splitting spliterators: checkpoints[j] is the node
+  // at index j*CHECKPOINT_STRIDE, as of modification
+  // checkpointModCount. As with the cached hash, appends and
+  // undos/redos of the last element keep them current; other
+  // modifications leave them stale until the next spliterator().
+  static final int CHECKPOINT_SHIFT = 6;
+  static final int CHECKPOINT_STRIDE = 1 << CHECKPOINT_SHIFT;
+  protected Node<T> checkpoints[] = newCheckpoints( 16 );
+  protected int nCheckpoints = 0;
+  protected int checkpointModCount = -1;
+  protected long poolHits = 0, poolMisses = 0;
+  
+  
+  // Construct an empty AdditiveList with unlimited undo history.
   public AdditiveList( ) {
+    this( RingStack.UNLIMITED );
+  }
+  
+  // Construct an empty AdditiveList which can undo at most the
+  // maxUndo most recent adds.
+  // @throws IllegalArgumentException if maxUndo is not positive.
+  public AdditiveList( int maxUndo ) {
+    this( maxUndo, false );
+  }
+  
+  // Construct an empty AdditiveList with unlimited undo history and,
+  // if indexed is true, a hash index of its elements so that
+  // contains() takes O(1) expected time.
+  public AdditiveList( boolean indexed ) {
+    this( RingStack.UNLIMITED, indexed );
+  }
+  
+  // Construct an empty AdditiveList which can undo at most the
+  // maxUndo most recent adds, with a hash index of its elements if
+  // indexed is true.
+  // @throws IllegalArgumentException if maxUndo is not positive.
+  public AdditiveList( int maxUndo, boolean indexed ) {
+    if( indexed )
+      this.counts = new HashMap<Object,Integer>( );
+    this.undoable = new RingStack<Node<T>>( maxUndo );
+    this.redoable = new RingStack<Node<T>>( maxUndo );
     this.beginMarker = new Node<T>( null, null, null );
     this.endMarker = new Node<T>( null, beginMarker, null );
     this.beginMarker.next = endMarker;
     this.theSize = 0;
     this.modCount++;
+    this.checkpointModCount = this.modCount;
   }
   
   // Returns the number of items in this collection.
@@ -56,16 +133,23 @@ public class AdditiveList<T> implements Iterable<T>{
   // Tests if some item is in this collection.
   // @param x any object.
   // @return true if this collection contains an item equal to x.
+  //
+  // Complexity: O(1) expected with an index, otherwise O(n)
   public boolean contains( Object x ){
+    if( counts != null )
+      return counts.containsKey( x );
     return findPos( x ) != NOT_FOUND;
   } 
   
   // Returns the position of first item matching x in this collection,
-  // or NOT_FOUND if not found.
+  // or NOT_FOUND if not found.  With an index, absent items are
+  // rejected without a scan.
   // @param x any object.
   // @return the position of first item matching x in this collection,
   // or NOT_FOUND if not found.
   protected Node<T> findPos( Object x ){
+    if( counts != null && !counts.containsKey( x ) )
+      return NOT_FOUND;
     for( Node<T> p = beginMarker.next; p != endMarker; p = p.next )
       if( x == null ){
       if( p.data == null )
@@ -83,15 +167,84 @@ public class AdditiveList<T> implements Iterable<T>{
   // @param idx position to add at.
   // @throws IndexOutOfBoundsException if idx is not between 0 and size(), inclusive.
   public void add( int idx, T x ){
-    Node<T> p = getNode( idx, 0, size( ) );
-    Node<T> newNode = new Node<T>( x, p.prev, p );
+    addBefore( getNode( idx, 0, size( ) ), x );
+  }
+  
+  // Adds an item before node p and records the add in the history.
+  // Used by add(idx,x) and by the iterator's add(x).
+  protected void addBefore( Node<T> p, T x ){
+    Node<T> newNode = newNode( x, p.prev, p );
     newNode.prev.next = newNode;
     p.prev = newNode;         
     theSize++;
     modCount++;
+    indexAdd( x );
+    hashAdded( newNode );
+    checkpointAdded( newNode );
     
     undoable.push(newNode);                                                                              //mod here
-    redoable.clear();
+    discardRedo();
+  }
+  
+  // A node for a new add, from the pool if it has one
+  protected Node<T> newNode( T x, Node<T> p, Node<T> n ){
+    if( pool == null ){
+      if( maxPooled > 0 )
+        poolMisses++;
+      return new Node<T>( x, p, n );
+    }
+    Node<T> node = pool;
+    pool = node.next;
+    pooled--;
+    poolHits++;
+    node.data = x; node.prev = p; node.next = n;
+    return node;
+  }
+  
+  // Empty the redo history, moving its nodes to the pool while there
+  // is room. Discarded nodes are unreachable from the list and any
+  // iterator that could still reach them has been invalidated by the
+  // adds and undos since.
+  //
+  // Complexity: O(r) for r nodes in the redo history, like clear()
+  protected void discardRedo( ){
+    while( pooled < maxPooled && !redoable.isEmpty( ) ){
+      Node<T> n = redoable.topAndPop( );
+      if( n == GROUP_START || n == GROUP_END )
+        continue;
+      n.data = null; n.prev = null;
+      poolNode( n );
+    }
+    redoable.clear( );
+  }
+  
+  // Add a discarded node, whose data and prev are cleared, to the
+  // pool. Subclasses with their own kinds of node may pool them
+  // differently, overriding this and dropPooled().
+  protected void poolNode( Node<T> n ){
+    n.next = pool;
+    pool = n;
+    pooled++;
+  }
+  
+  // Release one node from the pool, which must not be empty
+  protected void dropPooled( ){
+    Node<T> n = pool;
+    pool = n.next;
+    n.next = null;
+    pooled--;
+  }
+  
+  // Count one more occurrence of x in the index, if there is one
+  protected void indexAdd( Object x ){
+    if( counts != null )
+      counts.merge( x, 1, Integer::sum );
+  }
+  
+  // Count one less occurrence of x in the index, if there is one
+  protected void indexRemove( Object x ){
+    if( counts != null && counts.merge( x, -1, Integer::sum ) == 0 )
+      counts.remove( x );
   }
   
   // Adds all item in given iterable collection to the end of this
@@ -231,15 +384,47 @@ public class AdditiveList<T> implements Iterable<T>{
   }
   
   // Return a hashCode for the list.  Will be discussed later in CS 310
+  //
+  // The value is cached until the list changes other than at its
+  // end, so as with other collections, elements must not change their
+  // own hash codes while in the list.
+  //
+  // Complexity: O(1) if cached, otherwise O(n)
   public final int hashCode( ){
+    if( hashModCount == modCount )
+      return cachedHash;
+    
     int hashVal = 1;
     
     for( T obj : this )
       hashVal = 31 * hashVal + ( obj == null ? 0 : obj.hashCode( ) );
     
+    cachedHash = hashVal;
+    hashModCount = modCount;
     return hashVal;
   }
   
+  // Update the cached hash after node n was linked into the list and
+  // modCount incremented. Only a node at the end extends the
+  // polynomial hash: h' = 31*h + hash(x).
+  protected void hashAdded( Node<T> n ){
+    if( hashModCount == modCount - 1 && n.next == endMarker ){
+      cachedHash = 31 * cachedHash + ( n.data == null ? 0 : n.data.hashCode( ) );
+      hashModCount = modCount;
+    }
+  }
+  
+  // Update the cached hash after node n was unlinked from the list and
+  // modCount incremented; n keeps its own links. Removing the last
+  // element reverses an append: h = (h' - hash(x)) / 31, where
+  // dividing by 31 is multiplying by its inverse INV31.
+  protected void hashRemoved( Node<T> n ){
+    if( hashModCount == modCount - 1 && n.next == endMarker ){
+      cachedHash = ( cachedHash - ( n.data == null ? 0 : n.data.hashCode( ) ) ) * INV31;
+      hashModCount = modCount;
+    }
+  }
+  
   // Return a string representation of the list. This should match the
   // format of other java lists.
   public String toString( ){
@@ -267,20 +452,20 @@ public class AdditiveList<T> implements Iterable<T>{
   // Target Complexity: O(1) (worst case)
   public void undo(){
     // mods here
+    if (groupDepth > 0){
+      throw new RuntimeException("Cannot undo while a group is open");
+    }
     if (this.undoable.isEmpty()){
       throw new RuntimeException("Undo history is empty");
     }
     
     Node<T> undoneNode = undoable.topAndPop();
+    if (undoneNode == GROUP_END){
+      undoGroup();
+      return;
+    }
     redoable.push(undoneNode);
-    
-    Node<T> tempNode = undoneNode.next;
-    
-    tempNode.prev = undoneNode.prev;
-    undoneNode.prev.next = tempNode;
-    
-    theSize--;
-    modCount++;
+    unlinkAdded(undoneNode);
   }
   
   // REQUIRED: Redo an add which has been undone using undo().  If no
@@ -289,18 +474,173 @@ public class AdditiveList<T> implements Iterable<T>{
   //
   // Target Complexity: O(1) (worst case)
   public void redo(){
+    if (groupDepth > 0){
+      throw new RuntimeException("Cannot redo while a group is open");
+    }
     if (redoable.isEmpty()){
       throw new RuntimeException("Redo history is empty");
     }
     
     Node<T> redoneNode = redoable.topAndPop();
+    if (redoneNode == GROUP_START){
+      redoGroup();
+      return;
+    }
     undoable.push(redoneNode);
+    relinkAdded(redoneNode);
+  }
+  
+  // Unlink a node which was the most recent remaining add.  The node
+  // keeps its own links so relinkAdded() can restore it.
+  protected void unlinkAdded( Node<T> undoneNode ){
+    Node<T> tempNode = undoneNode.next;
+    
+    tempNode.prev = undoneNode.prev;
+    undoneNode.prev.next = tempNode;
     
+    theSize--;
+    modCount++;
+    indexRemove( undoneNode.data );
+    hashRemoved( undoneNode );
+    checkpointRemoved( undoneNode );
+  }
+  
+  // Relink a node removed by unlinkAdded()
+  protected void relinkAdded( Node<T> redoneNode ){
     redoneNode.next.prev = redoneNode;
     redoneNode.prev.next = redoneNode;
     
     theSize++;
     modCount++;
+    indexAdd( redoneNode.data );
+    hashAdded( redoneNode );
+    checkpointAdded( redoneNode );
+  }
+  
+  ////////////////////////////////////////////////////////////////////////////////
+  // Groups
+  // 
+  // Adds made between beginGroup() and the matching endGroup() are
+  // undone and redone as one unit.  Groups may nest; only the
+  // outermost group is recorded.  undo() and redo() are not allowed
+  // while a group is open.  In the history a group is the adds
+  // between a GROUP_START and a GROUP_END marker; with a bounded
+  // history the oldest group may lose its start and then be only
+  // partly undoable.
+  //
+  // When the adds of a group form a contiguous run of the list in the
+  // order they were made, as when appending a batch, undoing or
+  // redoing the group splices the whole run with two pointer changes.
+  
+  // Open a group of adds. The redo history is kept until the
+  // group's first add discards it, so an empty group changes nothing.
+  public void beginGroup(){
+    if (groupDepth++ == 0){
+      undoable.push(GROUP_START);
+    }
+  }
+  
+  // Close the group opened by the matching beginGroup(). A group
+  // with no adds leaves no history.  Throws a RuntimeException with
+  // the message "No group is open" if there is no group to close.
+  public void endGroup(){
+    if (groupDepth == 0){
+      throw new RuntimeException("No group is open");
+    }
+    if (--groupDepth == 0){
+      if (undoable.getTop() == GROUP_START)
+        undoable.pop();
+      else
+        undoable.push(GROUP_END);
+    }
+  }
+  
+  // Return true if a group is open
+  public boolean inGroup(){
+    return groupDepth > 0;
+  }
+  
+  // Whether contiguous groups may be spliced out and in as a unit.
+  // Subclasses whose nodes carry more structure than the level links
+  // return false to have group members unlinked one at a time.
+  protected boolean splicesGroups(){
+    return true;
+  }
+  
+  // Undo the group whose GROUP_END was just popped: move its adds to
+  // the redo history, most recent first, then remove them from the
+  // list.
+  //
+  // Target Complexity: O(k) stack moves for k adds, and O(1) list
+  // changes if the group is contiguous
+  protected void undoGroup(){
+    redoable.push(GROUP_END);
+    int k = 0;
+    boolean contiguous = true;
+    Node<T> first = null, last = null;
+    while (!undoable.isEmpty() && undoable.getTop() != GROUP_START){
+      Node<T> n = undoable.topAndPop();
+      redoable.push(n);
+      if (last == null)
+        last = n;
+      else if (first.prev != n)
+        contiguous = false;
+      first = n;
+      k++;
+    }
+    if (!undoable.isEmpty())
+      undoable.pop();
+    
+    if (k > 0 && contiguous && splicesGroups()){
+      first.prev.next = last.next;
+      last.next.prev = first.prev;
+      theSize -= k;
+      modCount++;
+      for (Node<T> p = first; k > 0; p = p.next, k--)
+        indexRemove(p.data);
+    }
+    else{
+      int top = redoable.size();                           // Unlink most recent first
+      for (int i = top - k; i < top; i++)
+        unlinkAdded(redoable.get(i));
+    }
+    redoable.push(GROUP_START);
+  }
+  
+  // Redo the group whose GROUP_START was just popped, restoring its
+  // adds in the order they were made.
+  protected void redoGroup(){
+    undoable.push(GROUP_START);
+    int k = 0;
+    boolean contiguous = true;
+    Node<T> first = null, last = null;
+    while (!redoable.isEmpty() && redoable.getTop() != GROUP_END){
+      Node<T> n = redoable.topAndPop();
+      undoable.push(n);
+      if (first == null)
+        first = n;
+      else if (n.prev != last)
+        contiguous = false;
+      last = n;
+      k++;
+    }
+    if (!redoable.isEmpty())
+      redoable.pop();
+    
+    if (k > 0 && contiguous && splicesGroups()){
+      first.prev.next = first;
+      last.next.prev = last;
+      theSize += k;
+      modCount++;
+      for (Node<T> p = first; k > 0; p = p.next, k--)
+        indexAdd(p.data);
+    }
+    else{
+      int top = undoable.size();                           // Relink in the order made
+      for (int i = top - k; i < top; i++)
+        relinkAdded(undoable.get(i));
+    }
+    undoable.push(GROUP_END);
   }
   
   // REQUIRED: Return true if any adds to the list can be undone and
@@ -322,10 +662,71 @@ public class AdditiveList<T> implements Iterable<T>{
   }
   
   // REQUIRED: Clears the history of all adds; subsequently cannot
-  // undo or redo until more adds have been made.
+  // undo or redo until more adds have been made. Any open group is
+  // closed.
   public void clearHistory(){
     undoable.clear();
-    redoable.clear();
+    discardRedo();
+    groupDepth = 0;
+  }
+  
+  ////////////////////////////////////////////////////////////////////////////////
+  // Node Pool
+  // 
+  // A search which repeatedly adds, undoes and adds again drops every
+  // undone node when the next add clears the redo history.  With a
+  // pool those nodes are kept and reused by later adds instead of
+  // becoming garbage.  The history stacks are arrays and need no
+  // pooling.
+  
+  // Keep up to maxPooled discarded nodes for reuse; 0 turns pooling
+  // off and releases the pool.
+  // @throws IllegalArgumentException if maxPooled is negative.
+  public void setNodePool( int maxPooled ){
+    if( maxPooled < 0 )
+      throw new IllegalArgumentException( "Pool size must not be negative: " + maxPooled );
+    this.maxPooled = maxPooled;
+    while( pooled > maxPooled )
+      dropPooled( );
+  }
+  
+  // Return the number of nodes waiting in the pool
+  public int getPooledNodes( ){
+    return pooled;
+  }
+  
+  // Return the number of adds which reused a pooled node
+  public long getPoolHits( ){
+    return poolHits;
+  }
+  
+  // Return the number of adds made with pooling on which found the
+  // pool empty and allocated a node
+  public long getPoolMisses( ){
+    return poolMisses;
+  }
+  
+  // Return the fraction of adds made with pooling on that reused a
+  // node, 0 if there have been none
+  public double getPoolHitRate( ){
+    long adds = poolHits + poolMisses;
+    return ( adds == 0 ) ? 0.0 : (double) poolHits / adds;
+  }
+  
+  // Return the maximum number of adds that can be undone
+  public int getMaxUndo(){
+    return undoable.getMaxSize();
+  }
+  
+  // Return the estimated bytes of memory held by the undo/redo
+  // history: the arrays of both stacks plus the undone nodes, which
+  // are no longer in the list and are reachable only from the redo
+  // history. Elements themselves are not counted.
+  //
+  // Target Complexity: O(1) (worst case)
+  public long historyMemory(){
+    return undoable.memoryBytes() + redoable.memoryBytes() +
+      (long) NODE_BYTES * redoable.size();
   }
   
   ////////////////////////////////////////////////////////////////////////////////
@@ -359,6 +760,167 @@ public class AdditiveList<T> implements Iterable<T>{
   }
   
   
+  // Obtains a Spliterator over the list which is SIZED, SUBSIZED and
+  // ORDERED. Splitting hands off the first half of the remaining
+  // elements; the midpoint is found from the nearest checkpoint, so a
+  // split walks fewer than CHECKPOINT_STRIDE nodes.  Stale checkpoints
+  // are rebuilt here, before any split, so that splits running in
+  // parallel only read them.  Modifying the list while the
+  // spliterator is in use causes a ConcurrentModificationException.
+  //
+  // Complexity: O(1) if the checkpoints are current, otherwise O(n)
+  public Spliterator<T> spliterator( ){
+    prepareSplits( );
+    return new AListSpliterator( beginMarker.next, 0, size( ), modCount );
+  }
+  
+  // Return a sequential Stream over the elements of the list
+  public Stream<T> stream( ){
+    return StreamSupport.stream( spliterator( ), false );
+  }
+  
+  // Return a possibly parallel Stream over the elements of the list
+  public Stream<T> parallelStream( ){
+    return StreamSupport.stream( spliterator( ), true );
+  }
+  
+  // Return the node k positions after node p, which is at index idx,
+  // walking from p or from the last checkpoint before it, whichever
+  // is closer. The checkpoints must be current. Subclasses with faster
+  // positional access may override this and prepareSplits().
+  //
+  // Complexity: O(CHECKPOINT_STRIDE)
+  protected Node<T> nodeAfter( Node<T> p, int idx, int k ){
+    int target = idx + k;
+    if( target == theSize )
+      return endMarker;
+    int j = target >> CHECKPOINT_SHIFT;
+    if( ( j << CHECKPOINT_SHIFT ) > idx ){
+      p = checkpoints[ j ];
+      k = target - ( j << CHECKPOINT_SHIFT );
+    }
+    for( int i = 0; i < k; i++ )
+      p = p.next;
+    return p;
+  }
+  
+  // Bring the checkpoints up to date before spliterators split
+  //
+  // Complexity: O(1) if they are current, otherwise O(n)
+  protected void prepareSplits( ){
+    if( checkpointModCount == modCount )
+      return;
+    nCheckpoints = 0;
+    int i = 0;
+    for( Node<T> p = beginMarker.next; p != endMarker; p = p.next, i++ ){
+      if( ( i & ( CHECKPOINT_STRIDE - 1 ) ) == 0 )
+        appendCheckpoint( p );
+    }
+    checkpointModCount = modCount;
+  }
+  
+  // Update the checkpoints after node n was linked into the list and
+  // modCount incremented. Only a node at the end can be added as a
+  // checkpoint without shifting the others.
+  protected void checkpointAdded( Node<T> n ){
+    if( checkpointModCount == modCount - 1 && n.next == endMarker ){
+      if( ( ( theSize - 1 ) & ( CHECKPOINT_STRIDE - 1 ) ) == 0 )
+        appendCheckpoint( n );
+      checkpointModCount = modCount;
+    }
+  }
+  
+  // Update the checkpoints after node n was unlinked from the list and
+  // modCount incremented; n keeps its own links. Removing the last
+  // element drops it if it was a checkpoint.
+  protected void checkpointRemoved( Node<T> n ){
+    if( checkpointModCount == modCount - 1 && n.next == endMarker ){
+      if( ( theSize & ( CHECKPOINT_STRIDE - 1 ) ) == 0 )
+        checkpoints[ --nCheckpoints ] = null;
+      checkpointModCount = modCount;
+    }
+  }
+  
+  // Add node p as the next checkpoint, growing the array as needed
+  private void appendCheckpoint( Node<T> p ){
+    if( nCheckpoints == checkpoints.length ){
+      Node<T> bigger[] = newCheckpoints( 2 * nCheckpoints );
+      System.arraycopy( checkpoints, 0, bigger, 0, nCheckpoints );
+      checkpoints = bigger;
+    }
+    checkpoints[ nCheckpoints++ ] = p;
+  }
+  
+  // Allocate an array of nodes; generic arrays cannot be created directly
+  @SuppressWarnings({"unchecked","rawtypes"})
+  private static <T> Node<T>[] newCheckpoints( int n ){
+    return (Node<T>[]) new Node[ n ];
+  }
+  
+  // Spliterator over the remaining elements starting at node current,
+  // which is at index idx.
+  public class AListSpliterator implements Spliterator<T>{
+    protected Node<T> current;                 // Next node to hand out
+    protected int idx;                         // Index of current
+    protected int remaining;                   // Elements left to hand out
+    protected final int expectedModCount;      // How many modifications spliterator expects
+    
+    public AListSpliterator( Node<T> current, int idx, int remaining, int expectedModCount ){
+      this.current = current;
+      this.idx = idx;
+      this.remaining = remaining;
+      this.expectedModCount = expectedModCount;
+    }
+    
+    public boolean tryAdvance( Consumer<? super T> action ){
+      if( expectedModCount != modCount )
+        throw new ConcurrentModificationException( );
+      if( remaining == 0 )
+        return false;
+      T x = current.data;
+      current = current.next;
+      idx++;
+      remaining--;
+      action.accept( x );
+      return true;
+    }
+    
+    public void forEachRemaining( Consumer<? super T> action ){
+      Node<T> p = current;
+      for( int n = remaining; n > 0; n-- ){
+        action.accept( p.data );
+        p = p.next;
+      }
+      idx += remaining;
+      remaining = 0;
+      current = p;
+      if( expectedModCount != modCount )
+        throw new ConcurrentModificationException( );
+    }
+    
+    // Split off the first half of the remaining elements
+    public Spliterator<T> trySplit( ){
+      if( expectedModCount != modCount )
+        throw new ConcurrentModificationException( );
+      int half = remaining / 2;
+      if( half == 0 )
+        return null;
+      Spliterator<T> prefix = new AListSpliterator( current, idx, half, expectedModCount );
+      current = nodeAfter( current, idx, half );
+      idx += half;
+      remaining -= half;
+      return prefix;
+    }
+    
+    public long estimateSize( ){
+      return remaining;
+    }
+    
+    public int characteristics( ){
+      return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+    }
+  }
+  
   // This class implementats the ListIterator interface for the
   // AdditiveList.  It maintains a notion of a current position and
   // implicit reference to the AdditiveList through the syntax
@@ -442,11 +1004,9 @@ public class AdditiveList<T> implements Iterable<T>{
       if( expectedModCount != modCount )
         throw new ConcurrentModificationException( );
       
-      Node<T> addThis = new Node<T>(x,current.prev,current);
-      current.prev.next = addThis;
-      current.prev = addThis;
-      
-      AdditiveList.this.undoable.push(addThis);
+      AdditiveList.this.addBefore( current, x );
+      lastVisited = null;
+      expectedModCount = modCount;
     }        
     
     // The following methods may be optionally implemented but will
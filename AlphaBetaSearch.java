@@ -0,0 +1,547 @@
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// A game tree search for two player Gomoku style games played on a
+// SparseBoard.  search() runs negamax with alpha-beta pruning under
+// iterative deepening: depth 1, 2, 3, ... are searched in turn until
+// the time or node budget runs out, and each iteration tries the best
+// root move of the previous one first.  Moves are made and unmade
+// with set() and undoSet() on a private copy of the board, so the
+// game's board, its extent and its undo and redo history are never
+// changed.
+//
+// Candidate moves are the empty cells next to a stone, ordered by the
+// longest run they would make or block.  The static evaluation scores
+// each run by its length and number of open ends.  The search keeps
+// its own index of whose stone is at each cell so that neither move
+// generation nor evaluation compares elements.
+//
+// Positions are hashed with Zobrist keys of each stone's owner and
+// results are kept in a TranspositionTable, which gives cutoffs for
+// positions reached by different move orders and the best move to
+// try first on the next visit.
+//
+// With setThreads(n) greater than 1 a search is Lazy SMP: n-1 helper
+// threads each search the same root on their own copy of the board
+// while sharing the transposition table, so they fill it with results
+// the main thread then finds.  Helpers with odd numbers start one
+// iteration deeper so that the threads do not all search in step.
+// The move played is that of the thread which completed the deepest
+// iteration, the main thread on ties.  The thread count is fixed per
+// engine so that games on a shared host each use a known share of
+// its cores.
+//
+// After a search getNodes(), getElapsedMillis() and
+// getNodesPerSecond() report the work done by all threads and
+// getReport() sums it up in one line.
+//
+//  Space Complexity: O(N*(E + D*M) + S)
+//  N: The number of threads
+//  E: The number of elements on the board
+//  D: The search depth
+//  M: The number of candidate moves at a node
+//  S: The size of the transposition table
+public class AlphaBetaSearch<T>{
+
+  // Scores are from the point of view of the player to move. A win
+  // found at ply p scores WIN - p so nearer wins are preferred.
+  public static final int WIN = 1000000;
+  static final int INF = WIN + 1;
+  static final int MAX_PLY = 128;
+  static final int OTHER = 2;          // Owner of elements which are neither player's
+  static final int DEFAULT_TABLE_MB = 4;
+  static final int MAX_WEIGHT_LEN = 6;  // Longer runs weigh the same in evaluate()
+  static final long SIDE_KEY = 0x6A09E667F3BCC909L;   // Hashed in when player 2 is to move
+
+  static final int DIRS = SparseBoard.DIRS;
+  static final int DROW[] = SparseBoard.DROW;
+  static final int DCOL[] = SparseBoard.DCOL;
+
+  final SparseBoard<T> game;          // The board searched, never changed
+  SparseBoard<T> board;                // Copy of game the search plays on
+  final T players[];
+  final int winLength;
+
+  long timeLimitMillis = 1000;
+  long nodeLimit = Long.MAX_VALUE;
+  int maxDepth = MAX_PLY;
+  int threads = 1;
+  TranspositionTable table;
+
+  // Stones on the board during a search: cells maps a packed row/col
+  // to its owner, stones lists the packed row/cols in set order and
+  // hash is the XOR of Zobrist.key() of each with its owner as code.
+  RowColIndex cells;
+  LongArrayStack stones;
+  long hash;
+  RowColIndex seen = new RowColIndex();   // Cells already generated, by stamp
+  int stamp = 0;
+  long moves[][] = new long[MAX_PLY][];
+  int moveScores[][] = new int[MAX_PLY][];
+
+  // State of the running search. nodes and nodeShare are this
+  // thread's count and limit; stop is shared with the helpers and set
+  // when the main thread finishes.
+  long nodes, nodeShare, startNanos;
+  int firstDepth = 1;
+  long rootBest;
+  boolean stopped;
+  AtomicBoolean stop;
+
+  // Results of the last search
+  long totalNodes, elapsedNanos;
+  int depthReached, bestScore;
+  long bestMove;
+
+  // Create a search for the given board, the two players' elements
+  // and the run length which wins.
+  // @throws RuntimeException if the players are null or equal or
+  // winLength is not positive.
+  public AlphaBetaSearch(SparseBoard<T> board, T player1, T player2, int winLength){
+    if (player1 == null || player2 == null)
+      throw new RuntimeException("Cannot set elements to null");
+    if (player1.equals(player2))
+      throw new RuntimeException("Players must have distinct symbols");
+    if (winLength <= 0)
+      throw new RuntimeException("Winning length must be positive");
+    this.game = board;
+    this.players = newElems(2);
+    this.players[0] = player1;
+    this.players[1] = player2;
+    this.winLength = winLength;
+    this.table = new TranspositionTable(DEFAULT_TABLE_MB);
+  }
+
+  // Create helper number id of a parallel search by main, searching
+  // its own copy of the board and sharing main's table and stop flag.
+  private AlphaBetaSearch(AlphaBetaSearch<T> main, int id){
+    this.game = main.game;
+    this.board = copyOf(game);
+    this.players = main.players;
+    this.winLength = main.winLength;
+    this.timeLimitMillis = main.timeLimitMillis;
+    this.maxDepth = main.maxDepth;
+    this.table = main.table;
+    this.stop = main.stop;
+    this.startNanos = main.startNanos;
+    this.nodeShare = main.nodeLimit / main.threads;
+    this.firstDepth = Math.min(maxDepth, 1 + id % 2);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T[] newElems(int n){
+    return (T[]) new Object[n];
+  }
+
+  // Copy the elements of game to a board with unbounded history for
+  // the search to play on
+  private static <T> SparseBoard<T> copyOf(SparseBoard<T> game){
+    return new SparseBoard<T>(game.elementsInRowColOrder(), game.getFillElem());
+  }
+
+  // Limit each search to about millis milliseconds of wall time.
+  // @throws IllegalArgumentException if millis is not positive.
+  public void setTimeLimit(long millis){
+    if (millis <= 0)
+      throw new IllegalArgumentException("Time limit must be positive: "+millis);
+    this.timeLimitMillis = millis;
+  }
+
+  // Limit each search to at most nodes nodes.
+  // @throws IllegalArgumentException if nodes is not positive.
+  public void setNodeLimit(long nodes){
+    if (nodes <= 0)
+      throw new IllegalArgumentException("Node limit must be positive: "+nodes);
+    this.nodeLimit = nodes;
+  }
+
+  // Search with n threads, the calling thread and n-1 helpers. The
+  // node limit is divided evenly between them.
+  // @throws IllegalArgumentException if n is not positive.
+  public void setThreads(int n){
+    if (n < 1)
+      throw new IllegalArgumentException("Thread count must be positive: "+n);
+    this.threads = n;
+  }
+
+  // Return the number of threads a search uses
+  public int getThreads(){
+    return threads;
+  }
+
+  // Use the given table, which may be shared with other engines
+  // searching the same game, in place of this engine's own.
+  public void setTable(TranspositionTable table){
+    this.table = table;
+  }
+
+  // Return the transposition table searches use
+  public TranspositionTable getTable(){
+    return table;
+  }
+
+  // Stop deepening after the given depth.
+  // @throws IllegalArgumentException if depth is not in 1..128.
+  public void setMaxDepth(int depth){
+    if (depth < 1 || depth > MAX_PLY)
+      throw new IllegalArgumentException("Depth must be between 1 and "+MAX_PLY+": "+depth);
+    this.maxDepth = depth;
+  }
+
+  // Find a move for the player whose element is toMove. The board is
+  // not changed.
+  // Returns null if no empty cell is next to a stone.
+  // On an empty board the centre of the extent is returned at once.
+  // @throws RuntimeException if toMove is not one of the players.
+  //
+  // Complexity: bounded by the time and node limits
+  public RowColElem<T> search(T toMove){
+    int side = playerIndex(toMove);
+    if (side == OTHER)
+      throw new RuntimeException("Not a player: "+toMove);
+
+    startNanos = System.nanoTime();
+    nodes = 0;
+    totalNodes = 0;
+    depthReached = 0;
+    bestScore = 0;
+    stopped = false;
+    stop = new AtomicBoolean();
+    nodeShare = nodeLimit / threads + nodeLimit % threads;
+    board = copyOf(game);
+    loadStones();
+    if (stones.isEmpty()){
+      elapsedNanos = System.nanoTime() - startNanos;
+      return new RowColElem<T>((game.getMinRow() + game.getMaxRow()) / 2,
+                               (game.getMinCol() + game.getMaxCol()) / 2, toMove);
+    }
+    bestMove = -1;
+    if (generate(0, side, -1) == 0){
+      elapsedNanos = System.nanoTime() - startNanos;
+      return null;
+    }
+    long fallback = moves[0][0];                           // If no root move is searched
+
+    List<AlphaBetaSearch<T>> helpers = new ArrayList<AlphaBetaSearch<T>>();
+    List<Thread> running = new ArrayList<Thread>();
+    for (int id = 1; id < threads; id++){
+      final AlphaBetaSearch<T> helper = new AlphaBetaSearch<T>(this, id);
+      Thread t = new Thread(() -> { helper.loadStones(); helper.deepen(side); });
+      t.setDaemon(true);
+      helpers.add(helper);
+      running.add(t);
+      t.start();
+    }
+    deepen(side);
+    stop.set(true);
+    totalNodes = nodes;
+    for (int i = 0; i < helpers.size(); i++){
+      joinHelper(running.get(i));
+      AlphaBetaSearch<T> h = helpers.get(i);
+      totalNodes += h.nodes;
+      if (h.depthReached > depthReached && h.bestMove != -1){
+        depthReached = h.depthReached;
+        bestScore = h.bestScore;
+        bestMove = h.bestMove;
+      }
+    }
+
+    elapsedNanos = System.nanoTime() - startNanos;
+    if (bestMove == -1)
+      bestMove = fallback;
+    return new RowColElem<T>(RowColIndex.keyRow(bestMove), RowColIndex.keyCol(bestMove), toMove);
+  }
+
+  // Deepen from firstDepth until the budget runs out, the maximum
+  // depth is searched or a forced result is found, leaving the result
+  // of the deepest complete iteration.
+  void deepen(int side){
+    bestMove = -1;
+    for (int depth = firstDepth; depth <= maxDepth; depth++){
+      rootBest = -1;
+      int score = negamax(depth, 0, -INF, INF, side);
+      if (stopped){
+        if (bestMove == -1)                                // Partial first iteration
+          bestMove = rootBest;
+        break;
+      }
+      bestMove = rootBest;
+      bestScore = score;
+      depthReached = depth;
+      if (Math.abs(score) >= WIN - MAX_PLY)                // Forced result found
+        break;
+    }
+  }
+
+  // Wait for a helper thread to finish; helpers stop within a few
+  // thousand nodes of the stop flag being set.
+  private static void joinHelper(Thread t){
+    boolean interrupted = false;
+    while (true){
+      try{
+        t.join();
+        break;
+      }
+      catch (InterruptedException e){
+        interrupted = true;
+      }
+    }
+    if (interrupted)
+      Thread.currentThread().interrupt();
+  }
+
+  // Negamax value of the position for side to move, searching depth
+  // plies below it.  Returns 0 once the budget runs out; callers must
+  // check stopped.
+  int negamax(int depth, int ply, int alpha, int beta, int side){
+    nodes++;
+    if (nodes >= nodeShare || ((nodes & 1023) == 0 && (outOfTime() || stop.get())))
+      stopped = true;
+    if (stopped)
+      return 0;
+    if (depth == 0)
+      return evaluate(side);
+
+    long key = (side == 0) ? hash : hash ^ SIDE_KEY;
+    long ttMove = -1;
+    long e = table.probe(key);
+    if (e != TranspositionTable.MISS){
+      ttMove = TranspositionTable.move(e);
+      if (ply > 0 && TranspositionTable.depth(e) >= depth){   // The root needs its move
+        int s = fromTable(TranspositionTable.score(e), ply);
+        int bound = TranspositionTable.bound(e);
+        if (bound == TranspositionTable.EXACT
+            || (bound == TranspositionTable.LOWER && s >= beta)
+            || (bound == TranspositionTable.UPPER && s <= alpha))
+          return s;
+      }
+    }
+
+    int alpha0 = alpha;
+    int n = generate(ply, side, (ply == 0 && bestMove != -1) ? bestMove : ttMove);
+    long ms[] = moves[ply];
+    long bestHere = -1;
+    int best = -INF;
+    for (int i = 0; i < n; i++){
+      long m = ms[i];
+      int row = RowColIndex.keyRow(m), col = RowColIndex.keyCol(m);
+      make(row, col, side);
+      int score = board.checkWinAt(row, col, winLength)
+        ? WIN - ply - 1
+        : -negamax(depth - 1, ply + 1, -beta, -alpha, 1 - side);
+      unmake();
+      if (stopped)
+        return 0;
+      if (score > best){
+        best = score;
+        bestHere = m;
+        if (ply == 0)
+          rootBest = m;
+      }
+      if (best > alpha)
+        alpha = best;
+      if (alpha >= beta)
+        break;
+    }
+    if (n == 0)                                            // No moves is a draw
+      best = 0;
+    int bound = (best <= alpha0) ? TranspositionTable.UPPER
+      : (best >= beta) ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+    table.store(key, depth, toTable(best, ply), bound, bestHere);
+    return best;
+  }
+
+  // Win scores count plies from the root; the table holds them
+  // counted from the stored position so that they are valid wherever
+  // it is reached.
+  static int toTable(int score, int ply){
+    if (score >= WIN - MAX_PLY)
+      return score + ply;
+    if (score <= -(WIN - MAX_PLY))
+      return score - ply;
+    return score;
+  }
+
+  static int fromTable(int score, int ply){
+    if (score >= WIN - MAX_PLY)
+      return score - ply;
+    if (score <= -(WIN - MAX_PLY))
+      return score + ply;
+    return score;
+  }
+
+  // Whether the time limit has passed
+  boolean outOfTime(){
+    return System.nanoTime() - startNanos >= timeLimitMillis * 1000000L;
+  }
+
+  // Place side's stone at row/col
+  void make(int row, int col, int side){
+    board.set(row, col, players[side]);
+    long key = RowColIndex.key(row, col);
+    cells.put(key, side);
+    stones.push(key);
+    hash ^= Zobrist.key(row, col, side);
+  }
+
+  // Remove the most recent stone
+  void unmake(){
+    board.undoSet();
+    long key = stones.topAndPop();
+    hash ^= Zobrist.key(RowColIndex.keyRow(key), RowColIndex.keyCol(key), cells.get(key));
+    cells.remove(key);
+  }
+
+  // Owner of the element x: 0 or 1 for the players, OTHER otherwise
+  int playerIndex(T x){
+    return x.equals(players[0]) ? 0 : x.equals(players[1]) ? 1 : OTHER;
+  }
+
+  // Owner of the stone at row/col or -1 if the cell is empty
+  int owner(int row, int col){
+    return cells.get(row, col);
+  }
+
+  // Fill cells and stones from the board
+  void loadStones(){
+    cells = new RowColIndex();
+    stones = new LongArrayStack();
+    hash = 0;
+    for (RowColElem<T> e : board.rowColOrder()){
+      long key = RowColIndex.key(e.getRow(), e.getCol());
+      int p = playerIndex(e.getElem());
+      cells.put(key, p);
+      stones.push(key);
+      hash ^= Zobrist.key(e.getRow(), e.getCol(), p);
+    }
+  }
+
+  // Fill moves[ply] with the empty cells next to a stone, best first,
+  // and return how many there are. The move first, the best move of
+  // the previous iteration or from the table, goes first if it is
+  // among them.
+  int generate(int ply, int side, long first){
+    if (moves[ply] == null || moves[ply].length < 8*stones.size()){
+      moves[ply] = new long[Math.max(64, 16*stones.size())];
+      moveScores[ply] = new int[moves[ply].length];
+    }
+    long ms[] = moves[ply];
+    int sc[] = moveScores[ply];
+    int n = 0;
+    stamp++;
+    for (int s = 0; s < stones.size(); s++){
+      long key = stones.get(s);
+      int r = RowColIndex.keyRow(key), c = RowColIndex.keyCol(key);
+      for (int dr = -1; dr <= 1; dr++){
+        for (int dc = -1; dc <= 1; dc++){
+          long k = RowColIndex.key(r + dr, c + dc);
+          if (cells.get(k) != RowColIndex.NOT_FOUND || seen.get(k) == stamp)
+            continue;
+          seen.put(k, stamp);
+          int score = moveScore(r + dr, c + dc, side);
+          if (k == first)
+            score = Integer.MAX_VALUE;
+          int i = n++;                                     // Insertion sort, best first
+          while (i > 0 && sc[i-1] < score){
+            ms[i] = ms[i-1];
+            sc[i] = sc[i-1];
+            i--;
+          }
+          ms[i] = k;
+          sc[i] = score;
+        }
+      }
+    }
+    return n;
+  }
+
+  // Ordering score of a move at row/col: the longest run it would
+  // make for side, or block for the opponent, favouring its own.
+  int moveScore(int row, int col, int side){
+    int mine = 0, theirs = 0;
+    for (int d = 0; d < DIRS; d++){
+      mine = Math.max(mine, runLength(row, col, d, side));
+      theirs = Math.max(theirs, runLength(row, col, d, 1 - side));
+    }
+    return 2*mine*mine + theirs*theirs;
+  }
+
+  // Length of the run of p's stones through the empty cell row/col in
+  // direction d if p played there
+  int runLength(int row, int col, int d, int p){
+    int len = 1;
+    for (int i = 1; i < winLength && owner(row - i*DROW[d], col - i*DCOL[d]) == p; i++)
+      len++;
+    for (int i = 1; i < winLength && owner(row + i*DROW[d], col + i*DCOL[d]) == p; i++)
+      len++;
+    return len;
+  }
+
+  // Static value of the position for side to move: for each run of a
+  // player's stones, counted once from its first stone, 8^len when
+  // both ends are open and half that when one is; closed runs count
+  // nothing.  len is capped at MAX_WEIGHT_LEN so that no weight
+  // overflows for long winning lengths and the sums stay far from
+  // overflowing before the clamp.
+  int evaluate(int side){
+    long score0 = 0, score1 = 0;
+    for (int s = 0; s < stones.size(); s++){
+      long key = stones.get(s);
+      int r = RowColIndex.keyRow(key), c = RowColIndex.keyCol(key);
+      int p = cells.get(key);
+      if (p == OTHER)
+        continue;
+      for (int d = 0; d < DIRS; d++){
+        int before = owner(r - DROW[d], c - DCOL[d]);
+        if (before == p)
+          continue;                                        // Not the first stone of its run
+        int len = 1;
+        while (len < winLength && owner(r + len*DROW[d], c + len*DCOL[d]) == p)
+          len++;
+        int open = ((before == RowColIndex.NOT_FOUND) ? 1 : 0)
+          + ((owner(r + len*DROW[d], c + len*DCOL[d]) == RowColIndex.NOT_FOUND) ? 1 : 0);
+        long v = (1L << (3*Math.min(len, MAX_WEIGHT_LEN))) * open / 2;
+        if (p == 0)
+          score0 += v;
+        else
+          score1 += v;
+      }
+    }
+    long v = (side == 0) ? score0 - score1 : score1 - score0;
+    return (int) Math.max(-WIN / 2, Math.min(WIN / 2, v));
+  }
+
+  // Return the number of nodes visited by the last search, over all
+  // threads
+  public long getNodes(){
+    return totalNodes;
+  }
+
+  // Return the wall time of the last search in milliseconds
+  public long getElapsedMillis(){
+    return elapsedNanos / 1000000L;
+  }
+
+  // Return the nodes searched per second by the last search, 0 if it
+  // took no measurable time
+  public long getNodesPerSecond(){
+    return (elapsedNanos == 0) ? 0 : (long) (totalNodes * 1e9 / elapsedNanos);
+  }
+
+  // Return the deepest iteration the last search completed
+  public int getDepthReached(){
+    return depthReached;
+  }
+
+  // Return the score of the last completed iteration for the player
+  // who was to move
+  public int getScore(){
+    return bestScore;
+  }
+
+  // One line summary of the last search
+  public String getReport(){
+    return String.format("depth %d score %d nodes %d in %d ms (%d nodes/s)",
+                         depthReached, bestScore, totalNodes, getElapsedMillis(), getNodesPerSecond());
+  }
+}
@@ -0,0 +1,471 @@
+import java.util.*;
+
+// An implementation of an ExpandableBoard specialised for two player
+// games.  Each line of the board (every row, column, diagonal and
+// anti-diagonal) is a bitset per player divided into 64 bit words.
+// A stone sets one bit in each of the four lines through it, and runs
+// are found with shifts and ANDs over whole words rather than by
+// visiting elements one at a time.  Only words holding a stone are
+// stored: a RowColIndex keyed by (direction,line,word) locates each
+// word pair, so memory does not depend on how far apart the stones
+// are and the board is unbounded in every direction.
+//
+// isWinAfter(row,col) answers whether the stone at row/col is part of
+// a run of at least the winning length, which is the check a game or
+// search engine needs after each move; checkWinAt(row,col,k) does the
+// same for any length.
+//
+//  Space Complexity: O(E)
+//  E: The number of elements that have been set on the board
+public class BitBoard implements WinCheckBoard<String>{
+
+  // Directions of lines: row (W-E), column (N-S), diagonal (NW-SE),
+  // and anti-diagonal (NE-SW), same order as SparseBoard
+  static final int DIRS = 4;
+  static final int DROW[] = {0, 1, 1,  1};
+  static final int DCOL[] = {1, 0, 1, -1};
+
+
+  String fillElem;
+  String players[] = new String[2];
+  int winLength;
+  int minRow, maxRow, minCol, maxCol;
+
+  // Stored words. Position p along a line is bit p&63 of word p>>6;
+  // the word of player q found at slot s of wordIndex is
+  // words[2*s + q]. Words are never removed.
+  RowColIndex wordIndex = new RowColIndex();
+  long words[] = new long[2*16];
+  int nWords = 0;
+
+  // History of sets. moves[i] is the packed row/col of the i'th set
+  // and movePlayers[i] the player who made it; entries below nMoves
+  // are on the board, those from nMoves up to nRedo may be redone.
+  // For a move which created a new longest sequence, runs[2*i] and
+  // runs[2*i+1] hold how far the run extends behind the stone and its
+  // length. prevLongest[i] holds the encoded (move*DIRS+dir) longest
+  // sequence from before the move, -1 for none.
+  long moves[] = new long[16];
+  byte movePlayers[] = new byte[16];
+  int runs[] = new int[2*16];
+  int prevLongest[] = new int[16];
+  int nMoves = 0, nRedo = 0;
+
+  int longestMove = -1, longestDir = 0;
+
+  // Zobrist hash of the stones on the board, each keyed with its
+  // player index as the code
+  long zobristHash = 0;
+
+  // Workhorse constructor. Create an empty board with the given
+  // extent and fill element for the two given player symbols.
+  // winLength is the run length reported by isWinAfter().
+  public BitBoard(int minRow, int maxRow, int minCol, int maxCol, String fillElem,
+                  String player1, String player2, int winLength){
+    if (player1 == null || player2 == null)
+      throw new RuntimeException("Cannot set elements to null");
+    if (player1.equals(player2))
+      throw new RuntimeException("Players must have distinct symbols");
+    if (winLength <= 0)
+      throw new RuntimeException("Winning length must be positive");
+    this.minRow = minRow;
+    this.maxRow = maxRow;
+    this.minCol = minCol;
+    this.maxCol = maxCol;
+    this.players[0] = player1;
+    this.players[1] = player2;
+    this.winLength = winLength;
+    setFillElem(fillElem);
+  }
+
+  // Convenience constructor, creates a single cell board at 0,0.
+  public BitBoard(String fillElem, String player1, String player2, int winLength){
+    this(0,0,0,0,fillElem,player1,player2,winLength);
+  }
+
+  public int getMinRow(){
+    return this.minRow;
+  }
+
+  public int getMaxRow(){
+    return this.maxRow;
+  }
+
+  public int getMinCol(){
+    return this.minCol;
+  }
+
+  public int getMaxCol(){
+    return this.maxCol;
+  }
+
+  public String getFillElem(){
+    return this.fillElem;
+  }
+
+  // Return the run length needed to win
+  public int getWinLength(){
+    return this.winLength;
+  }
+
+  // Change the fill element. The fill element may not be one of the
+  // player symbols as cells holding it would be ambiguous.
+  //
+  // Complexity: O(1) (worst-case)
+  public void setFillElem(String f){
+    if (f == null)
+      throw new RuntimeException("Cannot set elements to null");
+    if (f.equals(players[0]) || f.equals(players[1]))
+      throw new RuntimeException("Fill element cannot be a player symbol");
+    this.fillElem = f;
+  }
+
+  // Grow the extent to include row/col. Always returns 0.
+  //
+  // Complexity: O(1) (worst-case)
+  public int expandToInclude(int row, int col){
+    if (row < minRow)
+      minRow = row;
+    else if (row > maxRow)
+      maxRow = row;
+
+    if (col < minCol)
+      minCol = col;
+    else if (col > maxCol)
+      maxCol = col;
+
+    return 0;
+  }
+
+  // Retrieve the element at row/col, the fill element if it is beyond
+  // the extent or has not been set.
+  //
+  // Complexity: O(1) (expected)
+  public String get(int row, int col){
+    if (row < minRow || row > maxRow || col < minCol || col > maxCol)
+      return fillElem;
+    int p = playerAt(row,col);
+    return (p == -1) ? fillElem : players[p];
+  }
+
+  // Set the element at row/col to one of the two player symbols with
+  // the usual ExpandableBoard rules. Setting any other non-fill
+  // element raises a RuntimeException.
+  //
+  // Complexity: O(1) (amortized expected)
+  public void set(int row, int col, String x){
+    if (x == null)
+      throw new RuntimeException("Cannot set elements to null");
+
+    int prev = playerAt(row,col);
+    if (prev != -1)
+      throw new RuntimeException(String.format("Element %d %d already set to %s",
+                                               row,col,players[prev]));
+
+    if (x.equals(fillElem))
+      return;
+
+    int p;
+    if (x.equals(players[0]))
+      p = 0;
+    else if (x.equals(players[1]))
+      p = 1;
+    else
+      throw new RuntimeException(String.format("Element %s is not a player of this board",x));
+
+    expandToInclude(row,col);
+
+    int move = nMoves;
+    if (move == moves.length){
+      moves = Arrays.copyOf(moves, 2*move);
+      movePlayers = Arrays.copyOf(movePlayers, 2*move);
+      runs = Arrays.copyOf(runs, 2*2*move);
+      prevLongest = Arrays.copyOf(prevLongest, 2*move);
+    }
+    moves[move] = RowColIndex.key(row,col);
+    movePlayers[move] = (byte) p;
+    place(move);
+    nRedo = nMoves;                                         // Discard any redo history
+  }
+
+  // Undo the most recent set.
+  //
+  // Complexity: O(1) (expected)
+  public void undoSet(){
+    if (nMoves == 0)
+      throw new RuntimeException("Undo history is empty");
+
+    int move = nMoves - 1;
+    long key = moves[move];
+    int row = RowColIndex.keyRow(key), col = RowColIndex.keyCol(key);
+    int p = movePlayers[move];
+    for (int d = 0; d < DIRS; d++){
+      int pos = pos(d,row,col);
+      int slot = wordIndex.get(wordKey(d, lineNumber(d,row,col), pos >> 6));
+      words[2*slot + p] &= ~(1L << pos);
+    }
+    zobristHash ^= Zobrist.key(row,col,p);
+
+    int prev = prevLongest[move];
+    longestMove = (prev == -1) ? -1 : prev / DIRS;
+    longestDir = (prev == -1) ? 0 : prev % DIRS;
+    nMoves--;
+  }
+
+  // Redo a set undone by undoSet().
+  //
+  // Complexity: O(1) (expected)
+  public void redoSet(){
+    if (nMoves == nRedo)
+      throw new RuntimeException("Redo history is empty");
+    place(nMoves);
+  }
+
+  // Set the bits of the given move in the four lines through it,
+  // check whether it made a new longest sequence, and advance nMoves.
+  private void place(int move){
+    long key = moves[move];
+    int row = RowColIndex.keyRow(key), col = RowColIndex.keyCol(key);
+    int p = movePlayers[move];
+
+    prevLongest[move] = (longestMove == -1) ? -1 : longestMove*DIRS + longestDir;
+    int bestLen = (longestMove == -1) ? 0 : runs[2*longestMove + 1];
+
+    for (int d = 0; d < DIRS; d++){
+      long line = lineNumber(d,row,col);
+      int pos = pos(d,row,col);
+      int at = 2*wordSlot(d, line, pos >> 6) + p;
+      words[at] |= 1L << pos;
+
+      int back = onesBelow(words[at], d, line, p, pos);
+      int len = back + 1 + onesAbove(words[at], d, line, p, pos);
+      if (len > bestLen){
+        bestLen = len;
+        runs[2*move] = back;
+        runs[2*move + 1] = len;
+        longestMove = move;
+        longestDir = d;
+      }
+    }
+    zobristHash ^= Zobrist.key(row,col,p);
+    nMoves = move + 1;
+  }
+
+  // Return true if the stone at row/col belongs to a run of at least
+  // getWinLength() equal stones in some direction. Returns false for
+  // unset cells.
+  //
+  // Complexity: O(k) word operations, no allocation
+  //  k: the winning length
+  public boolean isWinAfter(int row, int col){
+    return checkWinAt(row, col, winLength);
+  }
+
+  // Return true if the stone at row/col belongs to a run of at least
+  // k equal stones in some direction. Returns false for unset cells.
+  //
+  // For run lengths up to 32 the 2k-1 bits centred on the stone are
+  // extracted into a single long and k-1 shift-and-AND steps leave a
+  // bit set only where k consecutive bits were set; any such run must
+  // include the centre. Longer run lengths count run bits a word at a
+  // time.
+  //
+  // Complexity: O(k) word operations, no allocation
+  public boolean checkWinAt(int row, int col, int k){
+    int p = playerAt(row,col);
+    if (p == -1)
+      return false;
+    if (k <= 1)
+      return true;
+    for (int d = 0; d < DIRS; d++){
+      long line = lineNumber(d,row,col);
+      int pos = pos(d,row,col);
+      if (k <= 32){
+        long window = extract(d, line, p, (long) pos - (k-1), 2*k - 1);
+        for (int i = 1; i < k && window != 0; i++)
+          window &= window >>> 1;
+        if (window != 0)
+          return true;
+      }
+      else{
+        long word = word(d, line, p, pos >> 6);
+        if (onesBelow(word, d, line, p, pos) + 1 + onesAbove(word, d, line, p, pos) >= k)
+          return true;
+      }
+    }
+    return false;
+  }
+
+  // Return a 64-bit hash of the stones on the board, kept current by
+  // set(), undoSet() and redoSet(). Stones are hashed by player, 0
+  // for player1 and 1 for player2, so boards with the same players
+  // agree on hashes whichever moved first.
+  //
+  // Complexity: O(1) (worst-case)
+  public long getZobristHash(){
+    return zobristHash;
+  }
+
+  // Retrieve the longest sequence present on the board as an
+  // independent list; ties favor the earliest to appear.
+  //
+  // Complexity: O(L) (worst case)
+  //  L: length of the longest sequence
+  public List< RowColElem<String> > getLongestSequence(){
+    List<RowColElem<String>> seq = new ArrayList<RowColElem<String>>();
+    if (longestMove == -1)
+      return seq;
+
+    int d = longestDir;
+    long key = moves[longestMove];
+    String x = players[movePlayers[longestMove]];
+    int back = runs[2*longestMove], len = runs[2*longestMove + 1];
+    int row = RowColIndex.keyRow(key) - back*DROW[d];
+    int col = RowColIndex.keyCol(key) - back*DCOL[d];
+    for (int i = 0; i < len; i++){
+      seq.add(new RowColElem<String>(row,col,x));
+      row += DROW[d];
+      col += DCOL[d];
+    }
+    return seq;
+  }
+
+  // Return the player 0 or 1 with a stone at row/col, -1 if none
+  private int playerAt(int row, int col){
+    int slot = wordIndex.get(wordKey(0, row, col >> 6));
+    if (slot == RowColIndex.NOT_FOUND)
+      return -1;
+    if ((words[2*slot] & (1L << col)) != 0)
+      return 0;
+    if ((words[2*slot + 1] & (1L << col)) != 0)
+      return 1;
+    return -1;
+  }
+
+  // Number identifying the line in direction d through row/col. The
+  // diagonals' numbers are computed in long as they can exceed the
+  // range of int.
+  private static long lineNumber(int d, int row, int col){
+    switch (d){
+      case 0:  return row;
+      case 1:  return col;
+      case 2:  return (long) col - row;
+      default: return (long) col + row;
+    }
+  }
+
+  // Position of row/col along its line in direction d
+  private static int pos(int d, int row, int col){
+    return (d == 0) ? col : row;
+  }
+
+  // Key of word w of the given line in direction d. Line numbers take
+  // 34 bits and word numbers, which can step just beyond the words of
+  // int positions, 27.
+  private static long wordKey(int d, long line, long w){
+    return (line << 29) | ((w & 0x7FFFFFFL) << 2) | d;
+  }
+
+  // Return word w of player p on the given line, 0 if it is not stored
+  private long word(int d, long line, int p, long w){
+    int slot = wordIndex.get(wordKey(d, line, w));
+    return (slot == RowColIndex.NOT_FOUND) ? 0 : words[2*slot + p];
+  }
+
+  // Return the slot of word w of the given line, storing empty words
+  // for it if there are none.
+  private int wordSlot(int d, long line, long w){
+    long key = wordKey(d, line, w);
+    int slot = wordIndex.get(key);
+    if (slot != RowColIndex.NOT_FOUND)
+      return slot;
+    if (2*nWords == words.length)
+      words = Arrays.copyOf(words, 2*words.length);
+    wordIndex.put(key, nWords);
+    return nWords++;
+  }
+
+  // Return len (at most 64) bits of player p's bitset of a line
+  // starting at position start; missing words read as 0.
+  private long extract(int d, long line, int p, long start, int len){
+    long w = start >> 6;
+    int off = (int) (start & 63);
+    long result = word(d, line, p, w) >>> off;
+    if (off != 0)
+      result |= word(d, line, p, w+1) << (64 - off);
+    return (len == 64) ? result : result & ((1L << len) - 1);
+  }
+
+  // Number of consecutive set bits directly above position pos of
+  // player p's bitset of a line; word is the word holding pos.
+  private int onesAbove(long word, int d, long line, int p, int pos){
+    long rest = ~word >>> (pos & 63) >>> 1;                 // Zeros above pos become ones
+    int shifted = 63 - (pos & 63);
+    int run = Long.numberOfTrailingZeros(rest);
+    if (run < shifted)
+      return run;
+    int count = shifted;
+    for (long w = (pos >> 6) + 1; ; w++){
+      int r = Long.numberOfTrailingZeros(~word(d, line, p, w));
+      count += r;
+      if (r < 64)
+        break;
+    }
+    return count;
+  }
+
+  // Number of consecutive set bits directly below position pos of
+  // player p's bitset of a line; word is the word holding pos.
+  private int onesBelow(long word, int d, long line, int p, int pos){
+    int count = 0;
+    int below = pos & 63;
+    if (below > 0){
+      long rest = ~word << (64 - below);                    // Zeros below pos at the top
+      int run = Long.numberOfLeadingZeros(rest);
+      if (run < below)
+        return run;
+      count = below;
+    }
+    for (long w = (pos >> 6) - 1; ; w--){
+      int r = Long.numberOfLeadingZeros(~word(d, line, p, w));
+      count += r;
+      if (r < 64)
+        break;
+    }
+    return count;
+  }
+
+  // toString() - create a pretty representation of board in the same
+  // format as SparseBoard.
+  //
+  // Complexity: O(R*C)
+  //   R: number of rows
+  //   C: number of columns
+  public String toString(){
+    StringBuilder sb = new StringBuilder();
+
+    sb.append("    |");
+    for (int c = minCol; c <= maxCol; c++)
+      sb.append(String.format("%3d|",c));
+    sb.append("\n");
+    appendDivider(sb);
+
+    for (int r = minRow; r <= maxRow; r++){
+      sb.append(String.format("%3d |",r));
+      for (int c = minCol; c <= maxCol; c++)
+        sb.append(String.format("%3s|",get(r,c)));
+      sb.append("\n");
+      appendDivider(sb);
+    }
+
+    return sb.toString();
+  }
+
+  // Append a +---+---+ divider line spanning the columns of the board
+  private void appendDivider(StringBuilder sb){
+    sb.append("    +");
+    for (int c = minCol; c <= maxCol; c++)
+      sb.append("---+");
+    sb.append("\n");
+  }
+}
@@ -0,0 +1,229 @@
+import java.util.*;
+
+// A SparseBoard specialised for char elements, such as single
+// character player symbols.  Elements are held by an IntSparseBoard
+// as their char values so that no cell is ever boxed; only
+// getLongestSequence() boxes its results.  The IntSparseBoard
+// provides the run tracking, bounded undo history, checkWinAt() and
+// Zobrist hash.
+//
+// asBoard() provides a view of the board as a
+// WinCheckBoard<Character> for code written against the generic
+// interfaces.
+//
+//  Space Complexity: O(E)
+//  E: The number of elements that have been set on the board
+public class CharSparseBoard{
+
+  IntSparseBoard board;        // Holds chars widened to ints
+
+  // Workhorse constructor, an empty board with the given extent and
+  // fill element.
+  public CharSparseBoard(int minRow, int maxRow, int minCol, int maxCol, char fillElem){
+    this(minRow,maxRow,minCol,maxCol,fillElem,RingStack.UNLIMITED);
+  }
+
+  // Workhorse constructor with a bounded history: at most the maxUndo
+  // most recent sets can be undone. Throws an
+  // IllegalArgumentException if maxUndo is not positive.
+  public CharSparseBoard(int minRow, int maxRow, int minCol, int maxCol, char fillElem, int maxUndo){
+    board = new IntSparseBoard(minRow,maxRow,minCol,maxCol,fillElem,maxUndo);
+  }
+
+  // Convenience 1-arg constructor, a single cell board at 0,0.
+  public CharSparseBoard(char fillElem){
+    this(0,0,0,0,fillElem);
+  }
+
+  // Convenience 2-arg constructor, copies elements from a 2-D array
+  // with 0,0 at the upper left. The board has no undo/redo history.
+  public CharSparseBoard(char[][] x, char fillElem){
+    this(0,x.length - 1, 0, x[0].length - 1, fillElem);
+    for (int i = 0; i < x.length; i++){
+      for (int n = 0; n < x[i].length; n++){
+        board.set(i,n,x[i][n]);
+        board.runs.clearUndo();
+      }
+    }
+  }
+
+  public int getMinRow(){
+    return board.getMinRow();
+  }
+
+  public int getMaxRow(){
+    return board.getMaxRow();
+  }
+
+  public int getMinCol(){
+    return board.getMinCol();
+  }
+
+  public int getMaxCol(){
+    return board.getMaxCol();
+  }
+
+  public char getFillElem(){
+    return (char) board.getFillElem();
+  }
+
+  public void setFillElem(char f){
+    board.setFillElem(f);
+  }
+
+  public int expandToInclude(int row, int col){
+    return board.expandToInclude(row,col);
+  }
+
+  // Complexity: O(1) (expected)
+  public char get(int row, int col){
+    return (char) board.get(row,col);
+  }
+
+  // Set element at row/col to x with the rules of
+  // ExpandableBoard.set(); the exception message names the char
+  // rather than its code.
+  //
+  // Complexity: O(1) (amortized expected)
+  public void set(int row, int col, char x){
+    int prev = board.runs.slotAt(row,col);
+    if (prev != RowColIndex.NOT_FOUND)
+      throw new RuntimeException(String.format("Element %d %d already set to %c",
+                                               row,col,(char) board.runs.codes[prev]));
+    board.set(row,col,x);
+  }
+
+  public void undoSet(){
+    board.undoSet();
+  }
+
+  public void redoSet(){
+    board.redoSet();
+  }
+
+  public boolean canUndo(){
+    return board.canUndo();
+  }
+
+  public boolean canRedo(){
+    return board.canRedo();
+  }
+
+  public int getMaxUndo(){
+    return board.getMaxUndo();
+  }
+
+  // Complexity: O(k) (expected), no allocation
+  public boolean checkWinAt(int row, int col, int k){
+    return board.checkWinAt(row,col,k);
+  }
+
+  // Complexity: O(1) (worst-case)
+  public long getZobristHash(){
+    return board.getZobristHash();
+  }
+
+  // Retrieve the longest sequence as an independent list of boxed
+  // chars; ties favor the earliest to appear.
+  //
+  // Complexity: O(L) (expected)
+  //  L: length of the longest sequence
+  public List< RowColElem<Character> > getLongestSequence(){
+    List<RowColElem<Character>> seq = new ArrayList<RowColElem<Character>>();
+    for (RowColElem<Integer> rce : board.getLongestSequence()){
+      seq.add(new RowColElem<Character>(rce.getRow(),rce.getCol(),(char) (int) rce.getElem()));
+    }
+    return seq;
+  }
+
+  // toString() - create a pretty representation of board in the same
+  // format as SparseBoard.
+  //
+  // Complexity: O(R*C)
+  //   R: number of rows
+  //   C: number of columns
+  public String toString(){
+    StringBuilder sb = new StringBuilder();
+
+    sb.append("    |");
+    for (int c = getMinCol(); c <= getMaxCol(); c++)
+      sb.append(String.format("%3d|",c));
+    sb.append("\n");
+    appendDivider(sb);
+
+    for (int r = getMinRow(); r <= getMaxRow(); r++){
+      sb.append(String.format("%3d |",r));
+      for (int c = getMinCol(); c <= getMaxCol(); c++)
+        sb.append(String.format("%3c|",get(r,c)));
+      sb.append("\n");
+      appendDivider(sb);
+    }
+
+    return sb.toString();
+  }
+
+  // Append a +---+---+ divider line spanning the columns of the board
+  private void appendDivider(StringBuilder sb){
+    sb.append("    +");
+    for (int c = getMinCol(); c <= getMaxCol(); c++)
+      sb.append("---+");
+    sb.append("\n");
+  }
+
+  // Return a view of this board as a WinCheckBoard<Character>.
+  // Elements are boxed and unboxed as they cross the view; the view
+  // and the board share all state.
+  public WinCheckBoard<Character> asBoard(){
+    return new BoxedView();
+  }
+
+  // WinCheckBoard<Character> view of the enclosing CharSparseBoard
+  public class BoxedView implements WinCheckBoard<Character>{
+    public Character getFillElem(){
+      return CharSparseBoard.this.getFillElem();
+    }
+    public void setFillElem(Character f){
+      if (f == null)
+        throw new RuntimeException("Cannot set elements to null");
+      CharSparseBoard.this.setFillElem(f);
+    }
+    public int getMaxRow(){
+      return CharSparseBoard.this.getMaxRow();
+    }
+    public int getMaxCol(){
+      return CharSparseBoard.this.getMaxCol();
+    }
+    public int getMinRow(){
+      return CharSparseBoard.this.getMinRow();
+    }
+    public int getMinCol(){
+      return CharSparseBoard.this.getMinCol();
+    }
+    public Character get(int row, int col){
+      return CharSparseBoard.this.get(row,col);
+    }
+    public void set(int row, int col, Character x){
+      if (x == null)
+        throw new RuntimeException("Cannot set elements to null");
+      CharSparseBoard.this.set(row,col,x);
+    }
+    public List< RowColElem<Character> > getLongestSequence(){
+      return CharSparseBoard.this.getLongestSequence();
+    }
+    public void undoSet(){
+      CharSparseBoard.this.undoSet();
+    }
+    public void redoSet(){
+      CharSparseBoard.this.redoSet();
+    }
+    public boolean checkWinAt(int row, int col, int k){
+      return CharSparseBoard.this.checkWinAt(row,col,k);
+    }
+    public long getZobristHash(){
+      return CharSparseBoard.this.getZobristHash();
+    }
+    public String toString(){
+      return CharSparseBoard.this.toString();
+    }
+  }
+}
@@ -0,0 +1,232 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+// ConcurrentAdditiveList is an append-only AdditiveList which may be
+// read by any number of threads while it is being appended to.
+// Appends are lock-free: a new node is linked after the last node with
+// a compare-and-set of its next link, then the tail is advanced, and
+// an appender that finds the tail lagging helps advance it first.  Any
+// number of threads may append at once.
+//
+// Iterators are snapshots.  An iterator visits exactly the elements
+// that were in the list when it was created, never throws
+// ConcurrentModificationException, and is not affected by later
+// appends, undos or redos.
+//
+// undo() and redo() move the tail back and forth along the nodes
+// without changing any links, so the undone nodes stay linked after
+// the tail for redo() to restore.  An append after an undo replaces
+// the link to the undone nodes, discarding them.  Undo and redo must
+// be called by a single writer thread and never while an append is in
+// progress; calls from several threads or overlapping appends must be
+// synchronized by the caller.
+//
+// Each node keeps its predecessor and index.  Snapshot iterators
+// follow next links, and an iterator that finds an undone node has been
+// replaced since it was created finishes its traversal from its last
+// node back along the predecessors instead.
+//
+//  add/undo/redo: O(1) (add is lock-free, retrying under contention)
+//  Space Complexity: O(N + U)
+//  N: The number of elements in the list
+//  U: The number of undone elements that can be redone
+public class ConcurrentAdditiveList<T> implements Iterable<T>{
+
+  // Singly-linked node which also keeps its predecessor and position.
+  // prev and index are written before the node is published by the
+  // compare-and-set of its predecessor's next link.
+  static class Node<T>{
+    final T data;
+    Node<T> prev;
+    int index;
+    volatile Node<T> next;
+    volatile boolean undone;        // Linked after the tail, awaiting redo
+    Node( T d ){
+      data = d;
+    }
+  }
+
+  @SuppressWarnings("rawtypes")
+  static final AtomicReferenceFieldUpdater<Node,Node> NEXT =
+    AtomicReferenceFieldUpdater.newUpdater( Node.class, Node.class, "next" );
+
+  protected final Node<T> head;            // Dummy node before the first, index -1
+  protected final AtomicReference<Node<T>> tail;
+  protected final AtomicLong relinks = new AtomicLong( ); // Count of undone nodes replaced
+
+  // Construct an empty list.
+  public ConcurrentAdditiveList( ){
+    head = new Node<T>( null );
+    head.index = -1;
+    tail = new AtomicReference<Node<T>>( head );
+  }
+
+  // Returns the number of items in this collection.
+  //
+  // Complexity: O(1)
+  public int size( ){
+    return tail.get( ).index + 1;
+  }
+
+  // Returns true if this collection is empty.
+  public boolean isEmpty( ){
+    return size( ) == 0;
+  }
+
+  // Adds an item to the end of this collection. Safe to call from any
+  // number of threads at once. Any undone adds can no longer be
+  // redone.
+  // @param x any object.
+  // @return true.
+  //
+  // Complexity: O(1) (lock-free)
+  @SuppressWarnings("unchecked")
+  public boolean add( T x ){
+    Node<T> n = new Node<T>( x );
+    while( true ){
+      Node<T> t = tail.get( );
+      Node<T> s = t.next;
+      if( s != null && !s.undone ){
+        tail.compareAndSet( t, s );        // Another append is linked but the tail lags
+        continue;
+      }
+      n.prev = t;
+      n.index = t.index + 1;
+      if( s != null )
+        relinks.incrementAndGet( );        // Before the link to s changes
+      if( NEXT.compareAndSet( t, s, n ) ){
+        tail.compareAndSet( t, n );
+        return true;
+      }
+    }
+  }
+
+  // Returns the last item in the collection.
+  // @throws RuntimeException if empty.
+  public T getLast( ){
+    Node<T> t = tail.get( );
+    if( t == head )
+      throw new RuntimeException("List is empty");
+    return t.data;
+  }
+
+  // Undo the most recent add which is still present. Must only be
+  // called by the single writer, with no append in progress.
+  // @throws RuntimeException if there is nothing to undo.
+  //
+  // Complexity: O(1)
+  public void undo(){
+    Node<T> t = tail.get( );
+    if( t == head )
+      throw new RuntimeException("Undo history is empty");
+    t.undone = true;
+    tail.set( t.prev );
+  }
+
+  // Redo the most recent undone add. Must only be called by the
+  // single writer, with no append in progress.
+  // @throws RuntimeException if there is nothing to redo.
+  //
+  // Complexity: O(1)
+  public void redo(){
+    Node<T> n = tail.get( ).next;
+    if( n == null || !n.undone )
+      throw new RuntimeException("Redo history is empty");
+    n.undone = false;
+    tail.set( n );
+  }
+
+  // Return true if any adds can be undone and false otherwise
+  public boolean canUndo(){
+    return tail.get( ) != head;
+  }
+
+  // Return true if any undone adds can be redone and false otherwise
+  public boolean canRedo(){
+    Node<T> n = tail.get( ).next;
+    return n != null && n.undone;
+  }
+
+  // Tests if some item is in a snapshot of this collection.
+  // @param x any object.
+  // @return true if this collection contains an item equal to x.
+  //
+  // Complexity: O(n)
+  public boolean contains( Object x ){
+    for( T y : this )
+      if( x == null ? y == null : x.equals( y ) )
+        return true;
+    return false;
+  }
+
+  // Returns a String representation of a snapshot of this collection.
+  public String toString( ){
+    StringBuilder sb = new StringBuilder( "[" );
+    String sep = "";
+    for( T x : this ){
+      sb.append( sep ).append( x );
+      sep = ", ";
+    }
+    return sb.append( "]" ).toString( );
+  }
+
+  // Obtains an Iterator over the elements in the list when it is
+  // called.
+  public Iterator<T> iterator( ){
+    return new SnapshotIterator( );
+  }
+
+  // Iterator over the nodes from the first to the tail at creation.
+  // The relink count is read before the tail, so if it is unchanged
+  // after a next link is read, no node up to the snapshot's last has
+  // been replaced and the link is on the snapshot's path.
+  public class SnapshotIterator implements Iterator<T>{
+    private final long expectedRelinks;
+    private final Node<T> last;
+    private Node<T> current;           // Node of the last element returned
+    private Object path[];             // Remaining elements once relinked
+    private int pathPos;
+
+    public SnapshotIterator( ){
+      expectedRelinks = relinks.get( );
+      last = tail.get( );
+      current = head;
+    }
+
+    public boolean hasNext( ){
+      return current != last;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T next( ){
+      if( !hasNext( ) )
+        throw new NoSuchElementException( );
+      if( path == null ){
+        Node<T> n = current.next;
+        if( n != null && relinks.get( ) == expectedRelinks ){
+          current = n;
+          return n.data;
+        }
+        unwind( );
+      }
+      T x = (T) path[ pathPos ];
+      path[ pathPos++ ] = null;
+      if( pathPos == path.length )
+        current = last;
+      return x;
+    }
+
+    // Collect the elements after current from last back along the
+    // predecessors, which never change.
+    private void unwind( ){
+      path = new Object[ last.index - current.index ];
+      int i = path.length;
+      for( Node<T> p = last; p != current; p = p.prev )
+        path[ --i ] = p.data;
+      pathPos = 0;
+    }
+  }
+}
@@ -36,18 +36,29 @@ public class GomokuS {
 
     System.out.println();
 
-    ExpandableBoard<String> board = new SparseBoard<String>(1,3,1,3,"");
+    // Two distinct players use the specialised bitboard
+    WinCheckBoard<String> board;
+    if(nPlayers == 2 && !playerSymbols.get(1).equals(playerSymbols.get(2))){
+      board = new BitBoard(1,3,1,3,"",playerSymbols.get(1),playerSymbols.get(2),winSeqLength);
+    }
+    else{
+      board = new SparseBoard<String>(1,3,1,3,"");
+    }
 
     int playerTurn = 1;
     int round = 1;
+    boolean justSet = false;     // Whether the last command set lastRow,lastCol
+    int lastRow = 0, lastCol = 0;
     while(true){
       System.out.println();
 
       System.out.printf("%s\n",board.toString());
 
-      // Check for a win
-      List<RowColElem<String>> longestSeq = board.getLongestSequence();
-      if(longestSeq.size() >= winSeqLength){
+      // Check for a win; only a set can make one and only along the
+      // lines through the new element, undo and redo restore earlier
+      // positions which had none
+      if(justSet && board.checkWinAt(lastRow,lastCol,winSeqLength)){
+        List<RowColElem<String>> longestSeq = board.getLongestSequence();
         playerTurn--;
         if(playerTurn == 0){
           playerTurn = nPlayers;
@@ -61,6 +72,7 @@ public class GomokuS {
       System.out.printf("Round %d Player %d (%s) turn; move (h for help): ",
                         round,playerTurn,playerSymbols.get(playerTurn));
       String move = in.next();
+      justSet = false;
 
 
       if(move.equals("h") || move.equals("help")){
@@ -106,6 +118,9 @@ public class GomokuS {
         else{
           String symbol = playerSymbols.get(playerTurn);
           board.set(row,col,symbol);
+          justSet = true;
+          lastRow = row;
+          lastCol = col;
           playerTurn++;
           if(playerTurn > nPlayers){
             playerTurn = 1;
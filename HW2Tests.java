@@ -6620,6 +6620,1443 @@ public class HW2Tests {
     checkLongestSequence(b,expectLS);
   }
 
-}
+  ////////////////////////////////////////////////////////////////////////////////
+  // Alternative board implementations
+  ////////////////////////////////////////////////////////////////////////////////
+
+  // Check that two boards agree on extents, string representation
+  // and longest sequence
+  public <T> void checkSameBoard(ExpandableBoard<T> expect, ExpandableBoard<T> actual, String history){
+    String expectLS = sortedLongest(expect), actualLS = sortedLongest(actual);
+    String expectS = expect.toString(), actualS = actual.toString();
+    if(!expectS.equals(actualS) || !expectLS.equals(actualLS)){
+      failFmt("\nBoards differ after moves:\n%s\n%s"+
+              "Expect longest: %s\nActual longest: %s\n",
+              history,simpleDiff2("EXPECT:\n"+expectS,"ACTUAL:\n"+actualS),
+              expectLS,actualLS);
+    }
+    assertEquals("getMinRow() differs",expect.getMinRow(),actual.getMinRow());
+    assertEquals("getMaxRow() differs",expect.getMaxRow(),actual.getMaxRow());
+    assertEquals("getMinCol() differs",expect.getMinCol(),actual.getMinCol());
+    assertEquals("getMaxCol() differs",expect.getMaxCol(),actual.getMaxCol());
+  }
+
+  // Whether two boards have the same extent, the same element in
+  // every cell of it and the same longest sequence, compared without
+  // printing the boards
+  public <T> boolean sameBoard(ExpandableBoard<T> expect, ExpandableBoard<T> actual){
+    if(expect.getMinRow() != actual.getMinRow() || expect.getMaxRow() != actual.getMaxRow() ||
+       expect.getMinCol() != actual.getMinCol() || expect.getMaxCol() != actual.getMaxCol()){
+      return false;
+    }
+    for(int r=expect.getMinRow(); r<=expect.getMaxRow(); r++){
+      for(int c=expect.getMinCol(); c<=expect.getMaxCol(); c++){
+        if(!expect.get(r,c).equals(actual.get(r,c))){
+          return false;
+        }
+      }
+    }
+    return sortedLongest(expect).equals(sortedLongest(actual));
+  }
+
+  public <T> String sortedLongest(ExpandableBoard<T> b){
+    List<RowColElem<T>> seq = b.getLongestSequence();
+    Collections.sort(seq,new RowMajor<T>());
+    return seq.toString();
+  }
+
+  // Apply the same pseudo-random sets, undos and redos to both boards
+  // checking that they agree after every move. Elements are drawn
+  // from elems at positions within radius of 0,0.
+  public <T> void checkRandomGame(SparseBoard<T> expect, ExpandableBoard<T> actual,
+                                  long seed, int nMoves, int radius, T elems[]){
+    Random rand = new Random(seed);
+    StringBuilder history = new StringBuilder();
+    for(int i=0; i<nMoves; i++){
+      int choice = rand.nextInt(10);
+      if(choice == 0 && expect.canUndo()){
+        expect.undoSet(); actual.undoSet();
+        history.append("undo\n");
+      }
+      else if(choice == 1 && expect.canRedo()){
+        expect.redoSet(); actual.redoSet();
+        history.append("redo\n");
+      }
+      else{
+        int row = rand.nextInt(2*radius+1)-radius;
+        int col = rand.nextInt(2*radius+1)-radius;
+        T elem = elems[rand.nextInt(elems.length)];
+        if(!expect.get(row,col).equals(expect.getFillElem())){
+          continue;
+        }
+        expect.set(row,col,elem); actual.set(row,col,elem);
+        history.append(String.format("set %d %d %s\n",row,col,elem));
+      }
+      if(!sameBoard(expect,actual)){         // Print the boards only to report a difference
+        checkSameBoard(expect,actual,history.toString());
+      }
+    }
+  }
 
+  @Test(timeout=1000) public void tiled_matches_sparse1(){
+    SparseBoard<Integer> expect = new SparseBoard<Integer>(0);
+    TiledBoard<Integer> actual = new TiledBoard<Integer>(0);
+    checkRandomGame(expect,actual,310L,200,4,new Integer[]{11,22});
+  }
+  @Test(timeout=1000) public void tiled_matches_sparse2(){
+    SparseBoard<Integer> expect = new SparseBoard<Integer>(-3,2,-20,-17,0);
+    TiledBoard<Integer> actual = new TiledBoard<Integer>(-3,2,-20,-17,0);
+    checkRandomGame(expect,actual,4L,300,20,new Integer[]{11,22,33});
+  }
+  @Test(timeout=1000) public void tiled_2D_constructor(){
+    Integer mat [][] = {
+      { 1, 0, 3, 8, },
+      { 4, 0, 3, 8, },
+      { 0, 0, 3, 0, },
+    };
+    SparseBoard<Integer> expect = new SparseBoard<Integer>(mat, 0);
+    TiledBoard<Integer> actual = new TiledBoard<Integer>(mat, 0);
+    checkSameBoard(expect,actual,"2D constructor");
+    boolean thrown = false;
+    try{
+      actual.undoSet();
+    }
+    catch(RuntimeException e){
+      thrown = true;
+      assertEquals("Undo history is empty",e.getMessage());
+    }
+    assertTrue("undoSet() after 2D constructor should throw",thrown);
+  }
+  @Test(timeout=1000) public void tiled_far_negative(){
+    TiledBoard<String> b = new TiledBoard<String>("");
+    b.set(-1000,-2000,"A");
+    b.set(1000,2000,"B");
+    b.set(-1001,-2001,"A");
+    assertEquals(-1001,b.getMinRow());
+    assertEquals(2000,b.getMaxCol());
+    assertEquals("A",b.get(-1000,-2000));
+    assertEquals("B",b.get(1000,2000));
+    assertEquals("",b.get(-999,-1999));
+    assertEquals("[(-1001,-2001,A), (-1000,-2000,A)]",b.getLongestSequence().toString());
+  }
+  @Test(timeout=3000) public void boards_many_distinct_elements(){
+    // More distinct elements than fit in a short code
+    int n = 33000;
+    SparseBoard<Integer> sparse = new SparseBoard<Integer>(-1);
+    TiledBoard<Integer> tiled = new TiledBoard<Integer>(-1);
+    SparseBoard<Dummy> dummies = new SparseBoard<Dummy>(new Dummy(-1));
+    for (int i = 0; i < n; i++){
+      sparse.set(i/256,i%256,i);
+      tiled.set(i/256,i%256,i);
+    }
+    for (int i = 0; i < 3000; i++){
+      dummies.set(0,i,new Dummy(i/2));
+    }
+    assertEquals(n,sparse.palette.size());
+    assertEquals(n,tiled.palette.size());
+    assertEquals(1500,dummies.palette.size());
+    for (int i : new int[]{0,32766,32767,32768,n-1}){
+      assertEquals(i,(int) sparse.get(i/256,i%256));
+      assertEquals(i,(int) tiled.get(i/256,i%256));
+    }
+    assertEquals(-1,(int) tiled.get(n/256,255));
+    assertEquals(2,dummies.getLongestSequence().size());
+    tiled.undoSet();
+    assertEquals(-1,(int) tiled.get((n-1)/256,(n-1)%256));
+  }
+
+  @Test(timeout=1000) public void bitboard_matches_sparse1(){
+    SparseBoard<String> expect = new SparseBoard<String>("");
+    BitBoard actual = new BitBoard("","X","O",5);
+    checkRandomGame(expect,actual,310L,300,5,new String[]{"X","O"});
+  }
+  @Test(timeout=1000) public void bitboard_matches_sparse2(){
+    // Spread across several 64 bit words in each direction
+    SparseBoard<String> expect = new SparseBoard<String>(-70,-69,60,61,".");
+    BitBoard actual = new BitBoard(-70,-69,60,61,".","X","O",5);
+    checkRandomGame(expect,actual,65L,60,70,new String[]{"X","O"});
+  }
+  @Test(timeout=1000) public void bitboard_isWinAfter1(){
+    // Runs crossing word boundaries in all four directions
+    int starts[][] = { {0,60}, {-66,3}, {-3,-3}, {62,-62} };
+    for(int d=0; d<4; d++){
+      BitBoard b = new BitBoard("","X","O",5);
+      int row = starts[d][0], col = starts[d][1];
+      for(int i=0; i<5; i++){
+        int r = row+i*SparseBoard.DROW[d], c = col+i*SparseBoard.DCOL[d];
+        b.set(r,c,"X");
+        assertEquals("Direction "+d+" stone "+i, i==4, b.isWinAfter(r,c));
+      }
+      assertFalse(b.isWinAfter(row-SparseBoard.DROW[d],col-SparseBoard.DCOL[d]));
+      b.undoSet();
+      assertFalse(b.isWinAfter(row,col));
+      b.redoSet();
+      assertTrue(b.isWinAfter(row,col));
+    }
+  }
+  @Test(timeout=1000) public void bitboard_isWinAfter2(){
+    BitBoard b = new BitBoard("","X","O",40);
+    for(int i=0; i<39; i++){
+      b.set(i,-20+i,"O");
+      b.set(i,-19+i,"X");
+    }
+    assertFalse(b.isWinAfter(0,-20));
+    b.set(39,19,"O");
+    assertTrue(b.isWinAfter(0,-20));
+    assertTrue(b.isWinAfter(39,19));
+    assertFalse(b.isWinAfter(0,-19));
+  }
+  @Test(timeout=1000) public void bitboard_far_apart(){
+    // Stones far apart on one line store only their own words
+    BitBoard b = new BitBoard("","X","O",5);
+    b.set(0,-100000000,"X");
+    b.set(0,100000000,"O");
+    b.set(1,-2000000000,"X");
+    b.set(1,2000000000,"O");
+    assertTrue(b.words.length <= 64);
+    assertEquals("X",b.get(1,-2000000000));
+    assertEquals("O",b.get(1,2000000000));
+    assertEquals("",b.get(1,0));
+    
+    // Runs at the ends of the int range, whose diagonals are beyond it
+    int max = Integer.MAX_VALUE, min = Integer.MIN_VALUE;
+    int starts[][] = { {max,max-4}, {min,min}, {max-5,max-5}, {min,max} };
+    String stones[] = { "X", "O", "O", "X" };
+    for(int d=0; d<4; d++){
+      int row = starts[d][0], col = starts[d][1];
+      for(int i=0; i<5; i++){
+        int r = row+i*SparseBoard.DROW[d], c = col+i*SparseBoard.DCOL[d];
+        b.set(r,c,stones[d]);
+        assertEquals("Direction "+d+" stone "+i, i==4, b.isWinAfter(r,c));
+      }
+    }
+    b.undoSet();
+    assertFalse(b.isWinAfter(min,max));
+    assertEquals("",b.get(min+4,max-4));
+    assertEquals("X",b.get(min+3,max-3));
+    assertEquals(5,b.getLongestSequence().size());
+  }
+  @Test(timeout=1000) public void bitboard_not_player(){
+    BitBoard b = new BitBoard("","X","O",5);
+    boolean thrown = false;
+    try{
+      b.set(0,0,"Z");
+    }
+    catch(RuntimeException e){
+      thrown = true;
+      assertEquals("Element Z is not a player of this board",e.getMessage());
+    }
+    assertTrue("Setting a non-player symbol should throw",thrown);
+    assertEquals("",b.get(0,0));
+  }
+
+  @Test(timeout=1000) public void int_board_matches_sparse1(){
+    SparseBoard<Integer> expect = new SparseBoard<Integer>(0);
+    IntSparseBoard actual = new IntSparseBoard(0);
+    checkRandomGame(expect,actual.asBoard(),310L,200,4,new Integer[]{11,22});
+  }
+  @Test(timeout=1000) public void int_board_2D_constructor(){
+    Integer mat [][] = {
+      { 1, 0, 3, 8, },
+      { 4, 0, 3, 8, },
+      { 0, 0, 3, 0, },
+    };
+    int imat [][] = {
+      { 1, 0, 3, 8, },
+      { 4, 0, 3, 8, },
+      { 0, 0, 3, 0, },
+    };
+    SparseBoard<Integer> expect = new SparseBoard<Integer>(mat, 0);
+    IntSparseBoard actual = new IntSparseBoard(imat, 0);
+    checkSameBoard(expect,actual.asBoard(),"2D constructor");
+    assertFalse(actual.canUndo());
+  }
+  @Test(timeout=1000) public void char_board_matches_sparse1(){
+    SparseBoard<Character> expect = new SparseBoard<Character>(' ');
+    CharSparseBoard actual = new CharSparseBoard(' ');
+    checkRandomGame(expect,actual.asBoard(),5L,200,4,new Character[]{'X','O','Z'});
+  }
+  @Test(timeout=1000) public void char_board_exceptions(){
+    CharSparseBoard b = new CharSparseBoard('.');
+    b.set(4,-2,'X');
+    String msg = null;
+    try{
+      b.set(4,-2,'O');
+    }
+    catch(RuntimeException e){
+      msg = e.getMessage();
+    }
+    assertEquals("Element 4 -2 already set to X",msg);
+    msg = null;
+    try{
+      b.asBoard().set(0,0,null);
+    }
+    catch(RuntimeException e){
+      msg = e.getMessage();
+    }
+    assertEquals("Cannot set elements to null",msg);
+  }
 
+  @Test(timeout=1000) public void primitive_boards_history_and_wins(){
+    CharSparseBoard b = new CharSparseBoard(0,0,0,0,'.',2);
+    IntSparseBoard ints = new IntSparseBoard(0,0,0,0,0,2);
+    assertEquals(2,b.getMaxUndo());
+    long empty = b.getZobristHash();
+    for(int i=0; i<4; i++){
+      b.set(i,i,'X');
+      ints.set(i,i,7);
+    }
+    WinCheckBoard<Character> view = b.asBoard();
+    assertTrue(view.checkWinAt(2,2,4));
+    assertFalse(view.checkWinAt(2,2,5));
+    assertFalse(view.checkWinAt(2,3,1));
+    assertTrue(ints.asBoard().checkWinAt(0,0,4));
+    assertEquals(4,ints.longestLength());
+    
+    long full = b.getZobristHash();
+    assertTrue(full != empty);
+    b.undoSet();
+    b.undoSet();
+    assertFalse(b.canUndo());                               // Only two sets kept
+    assertFalse(b.checkWinAt(0,0,3));
+    assertEquals(2,b.getLongestSequence().size());
+    b.redoSet();
+    b.redoSet();
+    assertEquals(full,b.getZobristHash());
+    ints.undoSet();
+    ints.undoSet();
+    assertFalse(ints.canUndo());
+    assertEquals(7,ints.get(1,1));
+    assertEquals(0,ints.get(2,2));
+  }
+  @Test(timeout=1000) public void rowcolelem_hashCode(){
+    RowColElem<String> a = new RowColElem<String>(3,-2,new String("XX"));
+    RowColElem<String> b = new RowColElem<String>(3,-2,new String("XX"));
+    assertEquals(a,b);
+    assertEquals(a.hashCode(),b.hashCode());
+    HashSet<RowColElem<String>> set = new HashSet<RowColElem<String>>();
+    set.add(a);
+    assertTrue(set.contains(b));
+    assertFalse(set.contains(new RowColElem<String>(-2,3,"XX")));
+  }
+  @Test(timeout=1000) public void sparse_elements_on_lines(){
+    SparseBoard<String> b = new SparseBoard<String>("-");
+    b.set(2,3,"A");
+    b.set(2,-1,"B");
+    b.set(0,5,"C");
+    b.set(4,1,"D");
+    b.set(5,6,"E");
+    assertEquals("[(2,-1,B), (2,3,A)]",b.elementsInRow(2).toString());
+    assertEquals("[]",b.elementsInRow(1).toString());
+    assertEquals("[(4,1,D)]",b.elementsInCol(1).toString());
+    assertEquals("[(2,3,A), (5,6,E)]",b.elementsInDiag(1).toString());
+    assertEquals("[(4,1,D), (2,3,A), (0,5,C)]",b.elementsInADiag(5).toString());
+    b.undoSet();
+    b.undoSet();
+    assertEquals("[(2,3,A)]",b.elementsInDiag(1).toString());
+    assertEquals("[(2,3,A), (0,5,C)]",b.elementsInADiag(5).toString());
+    b.redoSet();
+    assertEquals("[(4,1,D), (2,3,A), (0,5,C)]",b.elementsInADiag(5).toString());
+    b.set(3,4,"F");
+    assertEquals("[(2,3,A), (3,4,F)]",b.elementsInDiag(1).toString());
+    assertEquals("[(0,5,C), (2,-1,B), (2,3,A), (3,4,F), (4,1,D)]",
+                 b.elementsInRowColOrder().toString());
+  }
+  @Test(timeout=1000) public void sparse_order_views(){
+    SparseBoard<String> b = new SparseBoard<String>("-");
+    b.set(2,3,"A");
+    b.set(2,-1,"B");
+    b.set(0,5,"C");
+    b.set(4,1,"D");
+    List<RowColElem<String>> seen = new ArrayList<RowColElem<String>>();
+    for (RowColElem<String> rce : b.aDiagReverseRowOrder())
+      seen.add(rce);
+    assertEquals(b.elementsInADiagReverseRowOrder(),seen);
+    seen.clear();
+    for (RowColElem<String> rce : b.colRowOrder())
+      seen.add(rce);
+    assertEquals(b.elementsInColRowOrder(),seen);
+    assertEquals(4,java.util.stream.StreamSupport.stream(b.rowColOrder().spliterator(),false).count());
+    
+    Iterator<RowColElem<String>> it = b.diagRowOrder().iterator();
+    it.next();
+    b.undoSet();
+    try{
+      it.next();
+      fail("Expected ConcurrentModificationException");
+    }
+    catch(ConcurrentModificationException e){ }
+  }
+  // Check that two boards agree on contents, longest sequence and all
+  // four element orders
+  public <T> void checkSameOrders(SparseBoard<T> expect, SparseBoard<T> actual){
+    checkSameBoard(expect,actual,"");
+    assertEquals(expect.getLongestSequence(),actual.getLongestSequence());
+    assertEquals(expect.elementsInRowColOrder(),actual.elementsInRowColOrder());
+    assertEquals(expect.elementsInColRowOrder(),actual.elementsInColRowOrder());
+    assertEquals(expect.elementsInDiagRowOrder(),actual.elementsInDiagRowOrder());
+    assertEquals(expect.elementsInADiagReverseRowOrder(),actual.elementsInADiagReverseRowOrder());
+  }
+  @Test(timeout=1000) public void sparse_bulk_constructors(){
+    Random rand = new Random(10L);
+    String syms[] = {"-","X","O"};
+    String x[][] = new String[9][];
+    for (int r = 0; r < x.length; r++){
+      x[r] = new String[1 + rand.nextInt(12)];                 // Jagged rows
+      for (int c = 0; c < x[r].length; c++)
+        x[r][c] = syms[rand.nextInt(syms.length)];
+    }
+    SparseBoard<String> expect = new SparseBoard<String>(0,x.length-1,0,x[0].length-1,"-");
+    List<RowColElem<String>> elems = new ArrayList<RowColElem<String>>();
+    for (int r = 0; r < x.length; r++){
+      for (int c = 0; c < x[r].length; c++){
+        expect.set(r,c,x[r][c]);
+        elems.add(new RowColElem<String>(r,c,x[r][c]));
+      }
+    }
+    SparseBoard<String> fromArray = new SparseBoard<String>(x,"-");
+    checkSameOrders(expect,fromArray);
+    assertFalse(fromArray.canUndo());
+    assertFalse(fromArray.canRedo());
+    
+    Collections.shuffle(elems,rand);
+    elems.add(new RowColElem<String>(-3,20,"O"));
+    expect = new SparseBoard<String>("-");
+    for (RowColElem<String> rce : elems)
+      expect.set(rce.getRow(),rce.getCol(),rce.getElem());
+    SparseBoard<String> fromElems = new SparseBoard<String>(elems,"-");
+    checkSameOrders(expect,fromElems);
+    assertFalse(fromElems.canUndo());
+    
+    fromArray.set(-1,-1,"X");
+    fromArray.undoSet();
+    fromArray.redoSet();
+    assertEquals("X",fromArray.get(-1,-1));
+    assertEquals(new RowColElem<String>(-1,-1,"X"),fromArray.elementsInRowColOrder().get(0));
+  }
+  @Test(timeout=1000) public void sparse_bulk_constructor_exceptions(){
+    List<RowColElem<String>> elems = new ArrayList<RowColElem<String>>();
+    elems.add(new RowColElem<String>(4,-2,"XX"));
+    elems.add(new RowColElem<String>(4,-2,"OO"));
+    String msg = null;
+    try{
+      new SparseBoard<String>(elems,"-");
+    }
+    catch(RuntimeException e){
+      msg = e.getMessage();
+    }
+    assertEquals("Element 4 -2 already set to XX",msg);
+    msg = null;
+    try{
+      new SparseBoard<String>(new String[][]{{"-",null}},"-");
+    }
+    catch(RuntimeException e){
+      msg = e.getMessage();
+    }
+    assertEquals("Cannot set elements to null",msg);
+  }
+  @Test(timeout=1000) public void array_stacks(){
+    LongArrayStack moves = new LongArrayStack(1);
+    for (int i = 0; i < 40; i++){
+      moves.push(RowColIndex.key(i,-i));
+    }
+    assertEquals(40,moves.size());
+    assertEquals(-39,RowColIndex.keyCol(moves.topAndPop()));
+    assertEquals(38,RowColIndex.keyRow(moves.getTop()));
+    assertEquals(RowColIndex.key(0,0),moves.get(0));
+    moves.pop();
+    assertEquals(38,moves.size());
+    moves.clear();
+    assertTrue(moves.isEmpty());
+    String msg = null;
+    try{
+      moves.topAndPop();
+    }
+    catch(RuntimeException e){
+      msg = e.getMessage();
+    }
+    assertEquals("LongArrayStack empty in topAndPop",msg);
+  }
+  @Test(timeout=1000) public void list_bounded_undo(){
+    AdditiveList<Integer> l = new AdditiveList<Integer>(2);
+    assertEquals(2,l.getMaxUndo());
+    for (int i = 0; i < 5; i++)
+      l.add(i);
+    l.undo();
+    l.undo();
+    assertFalse(l.canUndo());
+    String msg = null;
+    try{
+      l.undo();
+    }
+    catch(RuntimeException e){
+      msg = e.getMessage();
+    }
+    assertEquals("Undo history is empty",msg);
+    assertEquals("[0, 1, 2]",l.toString());
+    l.redo();
+    assertEquals("[0, 1, 2, 3]",l.toString());
+    assertTrue(l.historyMemory() > 0);
+    
+    AdditiveList<Integer> unbounded = new AdditiveList<Integer>();
+    for (int i = 0; i < 1000; i++){
+      l.add(i);
+      unbounded.add(i);
+    }
+    assertTrue(l.historyMemory() < unbounded.historyMemory());
+  }
+  @Test(timeout=1000) public void sparse_bounded_undo(){
+    SparseBoard<String> expect = new SparseBoard<String>("-");
+    SparseBoard<String> actual = new SparseBoard<String>(0,0,0,0,"-",3);
+    Random rand = new Random(12L);
+    String syms[] = {"X","O"};
+    int undoable = 0;
+    for (int i = 0; i < 400; i++){
+      int choice = rand.nextInt(10);
+      if (choice < 2 && actual.canUndo()){
+        expect.undoSet();
+        actual.undoSet();
+        undoable--;
+      }
+      else if (choice < 4 && actual.canRedo()){
+        expect.redoSet();
+        actual.redoSet();
+        undoable++;
+      }
+      else{
+        int row = rand.nextInt(9) - 4, col = rand.nextInt(9) - 4;
+        if (expect.get(row,col).equals("-") && !actual.canRedo()){
+          String x = syms[rand.nextInt(2)];
+          expect.set(row,col,x);
+          actual.set(row,col,x);
+          undoable = Math.min(undoable + 1,3);
+        }
+      }
+      assertEquals(undoable > 0,actual.canUndo());
+      checkSameOrders(expect,actual);
+    }
+    assertTrue(actual.historyMemory() < expect.historyMemory());
+  }
+  // Apply pseudo-random adds, iterator adds, undos and redos to an
+  // UnrolledAdditiveList, checking it against snapshots kept in an
+  // ArrayList after every operation.
+  public void checkUnrolledRandom(long seed, int nOps, int chunkSize){
+    Random rand = new Random(seed);
+    UnrolledAdditiveList<Integer> actual = new UnrolledAdditiveList<Integer>(RingStack.UNLIMITED,chunkSize);
+    ArrayList<List<Integer>> undo = new ArrayList<List<Integer>>();
+    ArrayList<List<Integer>> redo = new ArrayList<List<Integer>>();
+    List<Integer> expect = new ArrayList<Integer>();
+    for(int i=0; i<nOps; i++){
+      int choice = rand.nextInt(10);
+      if(choice == 0 && actual.canUndo()){
+        actual.undo();
+        redo.add(expect);
+        expect = undo.remove(undo.size()-1);
+      }
+      else if(choice == 1 && actual.canRedo()){
+        actual.redo();
+        undo.add(expect);
+        expect = redo.remove(redo.size()-1);
+      }
+      else{
+        undo.add(new ArrayList<Integer>(expect));
+        redo.clear();
+        int idx = rand.nextInt(expect.size()+1);
+        if(choice < 5){
+          actual.add(idx,i);
+          expect.add(idx,i);
+        }
+        else{
+          ListIterator<Integer> it = actual.listIterator(idx);
+          ListIterator<Integer> model = expect.listIterator(idx);
+          int steps = rand.nextInt(3);
+          for(int k=0; k<steps && it.hasNext(); k++){
+            assertEquals(model.next(),it.next());
+          }
+          it.add(i);
+          model.add(i);
+          assertEquals(model.nextIndex(),it.nextIndex());
+          assertEquals(model.previous(),it.previous());
+          if(it.hasPrevious()){
+            assertEquals(model.previous(),it.previous());
+          }
+        }
+      }
+      assertEquals(expect.toString(),actual.toString());
+      assertEquals(expect.size(),actual.size());
+      assertEquals(expect.hashCode(),actual.hashCode());
+      assertEquals(undo.size() > 0,actual.canUndo());
+      assertEquals(redo.size() > 0,actual.canRedo());
+    }
+    List<Integer> back = new ArrayList<Integer>();
+    for(ListIterator<Integer> it = actual.listIterator(actual.size()); it.hasPrevious(); ){
+      back.add(0,it.previous());
+    }
+    assertEquals(expect,back);
+    for(int i=0; i<expect.size(); i++){
+      assertEquals(expect.get(i),actual.get(i));
+    }
+  }
+  @Test(timeout=1000) public void unrolled_matches_list1(){
+    checkUnrolledRandom(13L,400,2);
+  }
+  @Test(timeout=1000) public void unrolled_matches_list2(){
+    checkUnrolledRandom(14L,600,5);
+  }
+  @Test(timeout=1000) public void unrolled_concurrent_modification(){
+    UnrolledAdditiveList<String> l = new UnrolledAdditiveList<String>();
+    l.add("A");
+    l.add("B");
+    Iterator<String> it = l.iterator();
+    it.next();
+    l.undo();
+    try{
+      it.next();
+      fail("Expected ConcurrentModificationException");
+    }
+    catch(ConcurrentModificationException e){ }
+    ListIterator<String> lit = l.listIterator(1);
+    lit.add("C");
+    assertEquals("[A, C]",l.toString());
+    assertFalse(lit.hasNext());
+    l.undo();
+    assertEquals("[A]",l.toString());
+    String msg = null;
+    try{
+      l.undo();
+      l.undo();
+    }
+    catch(RuntimeException e){
+      msg = e.getMessage();
+    }
+    assertEquals("Undo history is empty",msg);
+  }
+  @Test(timeout=1000) public void indexed_matches_list(){
+    Random rand = new Random(21L);
+    IndexedAdditiveList<Integer> actual = new IndexedAdditiveList<Integer>();
+    ArrayList<List<Integer>> undo = new ArrayList<List<Integer>>();
+    ArrayList<List<Integer>> redo = new ArrayList<List<Integer>>();
+    List<Integer> expect = new ArrayList<Integer>();
+    for(int i=0; i<600; i++){
+      int choice = rand.nextInt(10);
+      if(choice < 2 && actual.canUndo()){
+        actual.undo();
+        redo.add(expect);
+        expect = undo.remove(undo.size()-1);
+      }
+      else if(choice < 4 && actual.canRedo()){
+        actual.redo();
+        undo.add(expect);
+        expect = redo.remove(redo.size()-1);
+      }
+      else{
+        undo.add(new ArrayList<Integer>(expect));
+        redo.clear();
+        int idx = rand.nextInt(expect.size()+1);
+        if(choice < 8){
+          actual.add(idx,i);
+          expect.add(idx,i);
+        }
+        else{
+          ListIterator<Integer> it = actual.listIterator(idx);
+          it.add(i);
+          expect.add(idx,i);
+          assertEquals(idx+1,it.nextIndex());
+          assertEquals(Integer.valueOf(i),it.previous());
+        }
+      }
+      assertEquals(expect.size(),actual.size());
+      if(expect.size() > 0){
+        int idx = rand.nextInt(expect.size());
+        assertEquals(expect.get(idx),actual.get(idx));
+        assertEquals(expect.get(expect.size()-1),actual.getLast());
+      }
+    }
+    assertEquals(expect.toString(),actual.toString());
+    for(int i=0; i<expect.size(); i++){
+      assertEquals(expect.get(i),actual.get(i));
+    }
+  }
+  @Test(timeout=1000) public void list_indexed_contains(){
+    List<AdditiveList<String>> lists = new ArrayList<AdditiveList<String>>();
+    lists.add(new AdditiveList<String>(true));
+    lists.add(new IndexedAdditiveList<String>(RingStack.UNLIMITED,true));
+    for (AdditiveList<String> l : lists){
+      l.add("A");
+      l.add("B");
+      l.add("A");
+      ListIterator<String> it = l.listIterator(1);
+      it.add("C");
+      it.add(null);
+      assertEquals(5,l.size());
+      assertNull(l.get(2));
+      assertTrue(l.contains("C"));
+      assertTrue(l.contains(null));
+      l.undo();
+      l.undo();
+      assertFalse(l.contains("C"));
+      assertFalse(l.contains(null));
+      l.undo();
+      assertTrue(l.contains("A"));
+      l.undo();
+      assertFalse(l.contains("B"));
+      l.undo();
+      assertFalse(l.contains("A"));
+      l.redo();
+      l.redo();
+      assertTrue(l.contains("A"));
+      assertTrue(l.contains("B"));
+      assertFalse(l.contains("C"));
+    }
+  }
+  @Test(timeout=1000) public void list_cached_hashCode(){
+    Random rand = new Random(16L);
+    List<AdditiveList<Integer>> lists = new ArrayList<AdditiveList<Integer>>();
+    lists.add(new AdditiveList<Integer>());
+    lists.add(new IndexedAdditiveList<Integer>());
+    for (AdditiveList<Integer> l : lists){
+      for (int i = 0; i < 300; i++){
+        int choice = rand.nextInt(10);
+        if (choice < 2 && l.canUndo())
+          l.undo();
+        else if (choice < 4 && l.canRedo())
+          l.redo();
+        else if (choice < 5)
+          l.add(rand.nextInt(l.size()+1),rand.nextInt(1000));
+        else if (choice < 6)
+          l.add(null);
+        else
+          l.add(rand.nextInt());
+        List<Integer> copy = new ArrayList<Integer>();
+        for (Integer x : l)
+          copy.add(x);
+        assertEquals(copy.hashCode(),l.hashCode());
+      }
+    }
+  }
+  @Test(timeout=1000) public void list_streams(){
+    List<AdditiveList<Integer>> lists = new ArrayList<AdditiveList<Integer>>();
+    lists.add(new AdditiveList<Integer>());
+    lists.add(new IndexedAdditiveList<Integer>());
+    for (AdditiveList<Integer> l : lists){
+      long sum = 0;
+      for (int i = 0; i < 5000; i++){
+        l.add(i);
+        sum += i;
+      }
+      assertEquals(sum,l.parallelStream().mapToLong(x -> x).sum());
+      assertEquals(5000,l.stream().count());
+      assertEquals(Integer.valueOf(4999),l.parallelStream().reduce((a,b) -> b).get());
+      
+      Spliterator<Integer> right = l.spliterator();
+      Spliterator<Integer> left = right.trySplit();
+      assertEquals(2500,left.estimateSize());
+      assertEquals(2500,right.estimateSize());
+      assertTrue(right.tryAdvance(x -> assertEquals(Integer.valueOf(2500),x)));
+      assertTrue(left.hasCharacteristics(Spliterator.SIZED | Spliterator.ORDERED));
+      l.undo();
+      try{
+        left.tryAdvance(x -> { });
+        fail("Expected ConcurrentModificationException");
+      }
+      catch(ConcurrentModificationException e){ }
+    }
+    
+    // Splits find their midpoints without walking half the list; a
+    // walk per split would take billions of node steps here
+    lists.clear();
+    lists.add(new AdditiveList<Integer>());
+    lists.add(new IndexedAdditiveList<Integer>());
+    int n = 1 << 17;
+    for (AdditiveList<Integer> l : lists){
+      for (int i = 0; i < n; i++)
+        l.add(i);
+      for (int rep = 0; rep < 10000; rep++){
+        if (rep == 3000)
+          l.undo();                                         // Checkpoints follow appends and undos
+        if (rep == 6000)
+          l.add(0,-1);                                      // and are rebuilt after other adds
+        int size = l.size(), start = (rep < 6000) ? 0 : -1;
+        Spliterator<Integer> s = l.spliterator();
+        for (int depth = 0; depth < 12; depth++){
+          long rem = s.estimateSize();
+          assertEquals(rem/2,s.trySplit().estimateSize());
+          start += rem/2;
+        }
+        assertEquals(size - start - ((rep < 6000) ? 0 : 1),s.estimateSize());
+        final int expect = start;
+        assertTrue(s.tryAdvance(x -> assertEquals(Integer.valueOf(expect),x)));
+      }
+    }
+  }
+  @Test(timeout=1000) public void list_group_undo_redo(){
+    List<AdditiveList<String>> lists = new ArrayList<AdditiveList<String>>();
+    lists.add(new AdditiveList<String>(true));
+    lists.add(new IndexedAdditiveList<String>(RingStack.UNLIMITED,true));
+    for (AdditiveList<String> l : lists){
+      l.add("A");
+      l.beginGroup();                                       // Contiguous appends
+      l.add("B");
+      l.add("C");
+      l.beginGroup();
+      l.add("D");
+      l.endGroup();
+      l.endGroup();
+      l.beginGroup();                                       // Scattered adds
+      l.add(0,"E");
+      l.add(2,"F");
+      l.listIterator(6).add("G");
+      l.endGroup();
+      l.beginGroup();                                       // Empty group leaves no history
+      l.endGroup();
+      assertEquals("[E, A, F, B, C, D, G]",l.toString());
+      int hash = l.hashCode();
+      
+      l.undo();
+      assertEquals("[A, B, C, D]",l.toString());
+      assertFalse(l.contains("F"));
+      l.undo();
+      assertEquals("[A]",l.toString());
+      assertEquals(1,l.size());
+      assertFalse(l.contains("C"));
+      l.redo();
+      assertEquals("[A, B, C, D]",l.toString());
+      assertTrue(l.contains("C"));
+      l.redo();
+      assertEquals("[E, A, F, B, C, D, G]",l.toString());
+      assertEquals(hash,l.hashCode());
+      assertFalse(l.canRedo());
+      l.undo();
+      l.undo();
+      l.undo();
+      assertEquals("[]",l.toString());
+      assertFalse(l.canUndo());
+      l.redo();
+      assertEquals("[A]",l.toString());
+      
+      l.beginGroup();
+      String msg = null;
+      try{
+        l.undo();
+      }
+      catch(RuntimeException e){
+        msg = e.getMessage();
+      }
+      assertEquals("Cannot undo while a group is open",msg);
+      l.endGroup();
+      assertTrue(l.canRedo());                              // Empty group keeps redo history
+      l.beginGroup();
+      l.add("H");
+      assertFalse(l.canRedo());
+      l.endGroup();
+      l.undo();
+      assertTrue(l.canRedo());
+      msg = null;
+      try{
+        l.endGroup();
+      }
+      catch(RuntimeException e){
+        msg = e.getMessage();
+      }
+      assertEquals("No group is open",msg);
+    }
+  }
+  @Test(timeout=1000) public void concurrent_list_snapshots(){
+    ConcurrentAdditiveList<Integer> l = new ConcurrentAdditiveList<Integer>();
+    for(int i=0; i<5; i++){
+      l.add(i);
+    }
+    Iterator<Integer> before = l.iterator();
+    assertEquals(0,(int) before.next());
+    l.undo();
+    l.undo();
+    assertEquals("[0, 1, 2]",l.toString());
+    Iterator<Integer> undone = l.iterator();
+    l.redo();
+    assertEquals("[0, 1, 2, 3]",l.toString());
+    l.add(7);                                             // Replaces undone 4
+    assertFalse(l.canRedo());
+    l.undo();
+    l.undo();
+    l.undo();
+    l.add(8);                                             // Replaces 2, 3 and 7
+    assertEquals("[0, 1, 8]",l.toString());
+    
+    List<Integer> seen = new ArrayList<Integer>();
+    while(before.hasNext()){
+      seen.add(before.next());
+    }
+    assertEquals(Arrays.asList(1,2,3,4),seen);
+    seen.clear();
+    for(Iterator<Integer> it = undone; it.hasNext(); ){
+      seen.add(it.next());
+    }
+    assertEquals(Arrays.asList(0,1,2),seen);
+    assertEquals(3,l.size());
+    assertEquals(8,(int) l.getLast());
+    assertTrue(l.contains(8));
+    assertFalse(l.contains(2));
+  }
+
+  @Test(timeout=3000) public void concurrent_list_appends() throws InterruptedException{
+    final ConcurrentAdditiveList<Integer> l = new ConcurrentAdditiveList<Integer>();
+    final int threads = 4, each = 20000;
+    final boolean failed[] = {false};
+    Thread writers[] = new Thread[threads];
+    for(int t=0; t<threads; t++){
+      final int base = t*each;
+      writers[t] = new Thread(){
+        public void run(){
+          for(int i=0; i<each; i++){
+            l.add(base+i);
+          }
+        }
+      };
+    }
+    Thread reader = new Thread(){
+      public void run(){
+        // Each thread's elements appear in the order it added them
+        while(l.size() < threads*each){
+          int last[] = new int[threads];
+          Arrays.fill(last,-1);
+          for(int x : l){
+            if(x % each <= last[x / each]){
+              failed[0] = true;
+            }
+            last[x / each] = x % each;
+          }
+        }
+      }
+    };
+    reader.start();
+    for(Thread w : writers){
+      w.start();
+    }
+    for(Thread w : writers){
+      w.join();
+    }
+    reader.join();
+    assertFalse(failed[0]);
+    assertEquals(threads*each,l.size());
+    boolean present[] = new boolean[threads*each];
+    int count = 0;
+    for(int x : l){
+      assertFalse(present[x]);
+      present[x] = true;
+      count++;
+    }
+    assertEquals(threads*each,count);
+  }
+  @Test(timeout=1000) public void list_node_pool(){
+    AdditiveList<Integer> l = new AdditiveList<Integer>(true);
+    l.setNodePool(2);
+    assertEquals(0.0,l.getPoolHitRate(),0.0);
+    for(int i=0; i<4; i++){
+      l.add(i);
+    }
+    assertEquals(4,l.getPoolMisses());
+    l.undo();
+    l.undo();
+    l.undo();
+    assertEquals(0,l.getPooledNodes());
+    l.add(7);                                             // Pools two of the three
+    assertEquals(2,l.getPooledNodes());
+    assertEquals(5,l.getPoolMisses());
+    l.add(8);
+    l.add(1,9);
+    assertEquals(2,l.getPoolHits());
+    assertEquals(5,l.getPoolMisses());
+    assertEquals(0,l.getPooledNodes());
+    assertEquals("[0, 9, 7, 8]",l.toString());
+    assertFalse(l.contains(3));
+    assertEquals(Arrays.asList(0,9,7,8).hashCode(),l.hashCode());
+    assertEquals(2.0/7,l.getPoolHitRate(),1e-9);
+    
+    l.undo();
+    l.undo();
+    l.redo();
+    assertEquals("[0, 7, 8]",l.toString());
+    l.beginGroup();
+    assertEquals(0,l.getPooledNodes());
+    l.add(5);                                             // Discards 9 to the pool
+    assertEquals(1,l.getPooledNodes());
+    l.add(6);
+    l.endGroup();
+    l.undo();
+    l.clearHistory();
+    assertEquals(2,l.getPooledNodes());
+    assertEquals("[0, 7, 8]",l.toString());
+    l.setNodePool(1);
+    assertEquals(1,l.getPooledNodes());
+    l.setNodePool(0);
+    assertEquals(0,l.getPooledNodes());
+    l.add(4);
+    assertEquals("[0, 7, 8, 4]",l.toString());
+    assertEquals(3,l.getPoolHits());
+    
+    
+    IndexedAdditiveList<Integer> il = new IndexedAdditiveList<Integer>();
+    il.setNodePool(150);
+    for(int i=0; i<200; i++){
+      il.add(i);
+    }
+    for(int i=0; i<200; i++){
+      il.undo();
+    }
+    il.add(0,-1);                                         // Pools 150 of the 200
+    assertEquals(150,il.getPooledNodes());
+    for(int i=0; i<200; i++){
+      il.add(i/2,i);                                      // Reuses nodes of matching levels
+    }
+    assertEquals(401,il.getPoolHits() + il.getPoolMisses());
+    assertEquals(150,il.getPooledNodes() + il.getPoolHits());
+    assertTrue(il.getPoolHits() > 100);
+    List<Integer> expect = new ArrayList<Integer>();
+    expect.add(-1);
+    for(int i=0; i<200; i++){
+      expect.add(i/2,i);
+    }
+    assertEquals(expect.toString(),il.toString());
+    for(int i=0; i<expect.size(); i++){
+      assertEquals(expect.get(i),il.get(i));
+    }
+    for(int i=0; i<100; i++){
+      il.undo();
+    }
+    il.redo();
+    expect.clear();
+    expect.add(-1);
+    for(int i=0; i<101; i++){
+      expect.add(i/2,i);
+    }
+    assertEquals(expect.toString(),il.toString());
+    assertEquals(expect.get(50),il.get(50));
+    int pooled = il.getPooledNodes();
+    il.add(0,-2);                                         // Pools the 99 nodes left to redo
+    assertEquals(pooled + 99,il.getPooledNodes());
+    il.setNodePool(3);
+    assertEquals(3,il.getPooledNodes());
+  }
+  // Longest run of equal elements through row/col found from get()
+  static <T> int runThrough(ExpandableBoard<T> b, int row, int col){
+    T x = b.get(row,col);
+    if(x.equals(b.getFillElem())){
+      return 0;
+    }
+    int best = 0;
+    for(int d=0; d<SparseBoard.DIRS; d++){
+      int dr = SparseBoard.DROW[d], dc = SparseBoard.DCOL[d], len = 1;
+      for(int i=1; b.get(row-i*dr,col-i*dc).equals(x); i++) len++;
+      for(int i=1; b.get(row+i*dr,col+i*dc).equals(x); i++) len++;
+      best = Math.max(best,len);
+    }
+    return best;
+  }
+
+  @Test(timeout=2000) public void boards_checkWinAt(){
+    Random rand = new Random(21);
+    for(int game=0; game<20; game++){
+      List<WinCheckBoard<String>> boards = new ArrayList<WinCheckBoard<String>>();
+      boards.add(new SparseBoard<String>("-"));
+      boards.add(new TiledBoard<String>("-"));
+      boards.add(new BitBoard("-","X","O",5));
+      for(int move=0; move<60; move++){
+        int row = rand.nextInt(9)-4, col = rand.nextInt(9)-4;
+        if(!boards.get(0).get(row,col).equals("-")){
+          continue;
+        }
+        String x = (move % 2 == 0) ? "X" : "O";
+        for(WinCheckBoard<String> b : boards){
+          b.set(row,col,x);
+        }
+        int len = runThrough(boards.get(0),row,col);
+        for(WinCheckBoard<String> b : boards){
+          for(int k=1; k<=7; k++){
+            assertEquals(b.getClass()+" "+row+" "+col+" k="+k, len >= k, b.checkWinAt(row,col,k));
+          }
+          assertFalse(b.checkWinAt(row+20,col,1));
+        }
+        if(move % 7 == 6){
+          for(WinCheckBoard<String> b : boards){
+            b.undoSet();
+            assertFalse(b.checkWinAt(row,col,1));
+            b.redoSet();
+          }
+        }
+      }
+    }
+    BitBoard b = new BitBoard("-","X","O",5);
+    for(int i=0; i<40; i++){
+      b.set(0,i,"X");
+    }
+    assertTrue(b.checkWinAt(0,20,40));
+    assertFalse(b.checkWinAt(0,20,41));
+  }
+  // Zobrist hash of a SparseBoard computed from scratch
+  static <T> long zobristOf(SparseBoard<T> b){
+    long h = 0;
+    for(RowColElem<T> e : b.rowColOrder()){
+      h ^= Zobrist.key(e.getRow(),e.getCol(),b.palette.codeOf(e.getElem()));
+    }
+    return h;
+  }
+
+  @Test(timeout=1000) public void sparse_zobrist_hash(){
+    Random rand = new Random(22);
+    SparseBoard<String> b = new SparseBoard<String>("-");
+    assertEquals(0,b.getZobristHash());
+    HashMap<Long,String> seen = new HashMap<Long,String>();
+    for(int move=0; move<400; move++){
+      int r = rand.nextInt(10);
+      if(r < 2 && b.canUndo()){
+        b.undoSet();
+      }
+      else if(r < 3 && b.canRedo()){
+        b.redoSet();
+      }
+      else{
+        int row = rand.nextInt(41)-20, col = rand.nextInt(41)-20;
+        if(b.get(row,col).equals("-")){
+          b.set(row,col,(move % 3 == 0) ? "X" : "O");
+        }
+      }
+      assertEquals(zobristOf(b),b.getZobristHash());
+      String pos = b.elementsInRowColOrder().toString();
+      String prev = seen.put(b.getZobristHash(),pos);
+      assertTrue(prev == null || prev.equals(pos));
+    }
+    
+    // Same position by different move orders and by a bulk constructor
+    SparseBoard<String> b1 = new SparseBoard<String>("-");
+    SparseBoard<String> b2 = new SparseBoard<String>("-");
+    b1.set(0,0,"X"); b1.set(1,1,"O"); b1.set(-5,7,"X"); b1.set(2,2,"O");
+    b2.set(-5,7,"X"); b2.set(2,2,"O"); b2.set(0,0,"X"); b2.set(1,1,"O");
+    assertEquals(b1.getZobristHash(),b2.getZobristHash());
+    SparseBoard<String> b3 = new SparseBoard<String>(b1.elementsInRowColOrder(),"-");
+    assertEquals(zobristOf(b3),b3.getZobristHash());
+    
+    // Swapping elements between two cells changes the hash
+    SparseBoard<String> b4 = new SparseBoard<String>("-");
+    b4.set(0,0,"X"); b4.set(1,1,"O"); b4.set(-5,7,"O"); b4.set(2,2,"X");
+    assertFalse(b1.getZobristHash() == b4.getZobristHash());
+    b2.undoSet();
+    b2.undoSet();
+    b2.redoSet();
+    b2.redoSet();
+    assertEquals(b1.getZobristHash(),b2.getZobristHash());
+    
+    // Every WinCheckBoard keeps the same hash; X is set first, so it
+    // has palette code 0 as it has player index 0 on a BitBoard
+    SparseBoard<String> sparse = new SparseBoard<String>("-");
+    List<WinCheckBoard<String>> boards = new ArrayList<WinCheckBoard<String>>();
+    boards.add(sparse);
+    boards.add(new TiledBoard<String>("-"));
+    boards.add(new BitBoard("-","X","O",5));
+    IntSparseBoard ints = new IntSparseBoard(-1);
+    WinCheckBoard<Integer> view = ints.asBoard();
+    CharSparseBoard chars = new CharSparseBoard('-');
+    WinCheckBoard<Character> charView = chars.asBoard();
+    int nSet = 0, nRedo = 0;
+    for(int move=0; move<400; move++){
+      int r = rand.nextInt(10);
+      if(r < 2 && nSet > 0){
+        for(WinCheckBoard<String> w : boards){
+          w.undoSet();
+        }
+        view.undoSet();
+        charView.undoSet();
+        nSet--;
+      }
+      else if(r < 3 && nRedo > nSet){
+        for(WinCheckBoard<String> w : boards){
+          w.redoSet();
+        }
+        view.redoSet();
+        charView.redoSet();
+        nSet++;
+      }
+      else{
+        int row = rand.nextInt(41)-20, col = rand.nextInt(41)-20;
+        if(sparse.get(row,col).equals("-")){
+          String x = (nSet == 0 || move % 3 == 0) ? "X" : "O";
+          for(WinCheckBoard<String> w : boards){
+            w.set(row,col,x);
+          }
+          view.set(row,col,x.equals("X") ? 0 : 1);
+          charView.set(row,col,x.charAt(0));
+          nSet++;
+          nRedo = nSet;
+        }
+      }
+      for(WinCheckBoard<String> w : boards){
+        assertEquals(zobristOf(sparse),w.getZobristHash());
+      }
+      assertEquals(ints.getZobristHash(),view.getZobristHash());
+      assertEquals(sparse.getZobristHash(),view.getZobristHash());
+      assertEquals(chars.getZobristHash(),charView.getZobristHash());
+    }
+  }
+  @Test(timeout=3000) public void search_finds_wins_and_blocks(){
+    SparseBoard<String> b = new SparseBoard<String>("-");
+    AlphaBetaSearch<String> s = new AlphaBetaSearch<String>(b,"X","O",5);
+    s.setNodeLimit(200000);
+    assertEquals("(0,0,X)",s.search("X").toString());        // Empty board: centre
+    
+    for(int i=0; i<4; i++){
+      b.set(0,i,"X");
+      b.set(3,2*i,"O");
+    }
+    String before = b.toString();
+    long hash = b.getZobristHash();
+    RowColElem<String> m = s.search("X");                   // Complete the five
+    assertTrue(m.toString(), m.getRow() == 0 && (m.getCol() == -1 || m.getCol() == 4));
+    assertTrue(s.getScore() >= AlphaBetaSearch.WIN - 1);
+    assertEquals(1,s.getDepthReached());
+    assertEquals(before,b.toString());
+    assertEquals(hash,b.getZobristHash());
+    assertEquals(8,b.elementsInRowColOrder().size());
+    
+    m = s.search("O");                                      // Must block a four
+    assertEquals(0,m.getRow());
+    assertTrue(m.toString(), m.getCol() == -1 || m.getCol() == 4);
+    assertEquals(before,b.toString());
+    assertTrue(b.canUndo());
+    b.undoSet();
+    assertEquals("-",b.get(3,6));
+    
+    String msg = null;
+    try{
+      s.search("Z");
+    }
+    catch(RuntimeException e){
+      msg = e.getMessage();
+    }
+    assertEquals("Not a player: Z",msg);
+  }
+
+  @Test(timeout=3000) public void search_budgets_and_report(){
+    SparseBoard<String> b = new SparseBoard<String>("-");
+    b.set(0,0,"X");
+    b.set(1,1,"O");
+    b.set(0,1,"X");
+    AlphaBetaSearch<String> s = new AlphaBetaSearch<String>(b,"X","O",5);
+    s.setNodeLimit(5000);
+    RowColElem<String> m = s.search("O");
+    assertEquals("O",m.getElem());
+    assertTrue(s.getNodes() <= 5000);
+    assertTrue(s.getDepthReached() >= 1);
+    assertEquals("-",b.get(m.getRow(),m.getCol()));
+    assertEquals(3,b.elementsInRowColOrder().size());
+    assertTrue(s.getReport(), s.getReport().startsWith("depth "+s.getDepthReached()));
+    
+    s.setNodeLimit(Long.MAX_VALUE);
+    s.setTimeLimit(50);
+    long start = System.currentTimeMillis();
+    s.search("O");
+    assertTrue(System.currentTimeMillis() - start < 1000);
+    assertTrue(s.getNodesPerSecond() > 0);
+    
+    s.setMaxDepth(2);
+    s.setTimeLimit(10000);
+    s.search("O");
+    assertEquals(2,s.getDepthReached());
+    assertEquals(0,b.getMinRow());
+    assertEquals(1,b.getMaxRow());
+  }
+  @Test(timeout=3000) public void search_long_win_length(){
+    SparseBoard<String> b = new SparseBoard<String>("-");
+    for(int i=0; i<22; i++){
+      b.set(0,i,"X");                                       // Open run far longer than 6
+    }
+    for(int i=0; i<3; i++){
+      b.set(5,i,"O");
+      b.set(9,3*i,"O");
+    }
+    AlphaBetaSearch<String> s = new AlphaBetaSearch<String>(b,"X","O",30);
+    s.setMaxDepth(2);
+    RowColElem<String> m = s.search("X");
+    assertEquals("X",m.getElem());
+    assertTrue(""+s.getScore(), s.getScore() > 0);
+    assertTrue(s.getScore() < AlphaBetaSearch.WIN - AlphaBetaSearch.MAX_PLY);
+    s.search("O");
+    assertTrue(""+s.getScore(), s.getScore() < 0);
+  }
+  @Test(timeout=3000) public void search_leaves_history(){
+    SparseBoard<String> b = new SparseBoard<String>(0,0,0,0,"-",4);
+    b.set(0,0,"X");
+    b.set(1,1,"O");
+    b.set(0,1,"X");
+    b.undoSet();
+    AlphaBetaSearch<String> s = new AlphaBetaSearch<String>(b,"X","O",5);
+    s.setMaxDepth(4);
+    s.search("X");
+    assertTrue(b.canRedo());                                // Redo history kept
+    assertEquals(1,b.getMaxCol());
+    b.redoSet();
+    assertEquals("X",b.get(0,1));
+    assertFalse(b.canRedo());
+    
+    s.search("O");
+    assertEquals(4,s.getDepthReached());
+    assertFalse(b.canRedo());
+    for(int i=0; i<3; i++){                                 // Undo history kept
+      assertTrue(b.canUndo());
+      b.undoSet();
+    }
+    assertFalse(b.canUndo());
+    assertEquals("-",b.get(0,0));
+  }
+  @Test(timeout=1000) public void transposition_table_basics(){
+    TranspositionTable t = new TranspositionTable(1);
+    assertEquals(65536,t.size());
+    assertEquals(1<<20,t.memoryBytes());
+    int buckets = t.size()/2;
+    assertEquals(TranspositionTable.MISS,t.probe(5));
+    t.store(5,3,-40,TranspositionTable.LOWER,RowColIndex.key(2,-3));
+    long e = t.probe(5);
+    assertEquals(3,TranspositionTable.depth(e));
+    assertEquals(-40,TranspositionTable.score(e));
+    assertEquals(TranspositionTable.LOWER,TranspositionTable.bound(e));
+    assertEquals(RowColIndex.key(2,-3),TranspositionTable.move(e));
+    
+    // Extremes of each field and entries with no move
+    t.store(6,TranspositionTable.MAX_DEPTH,-TranspositionTable.MAX_SCORE,TranspositionTable.UPPER,-1);
+    e = t.probe(6);
+    assertEquals(TranspositionTable.MAX_DEPTH,TranspositionTable.depth(e));
+    assertEquals(-TranspositionTable.MAX_SCORE,TranspositionTable.score(e));
+    assertEquals(TranspositionTable.UPPER,TranspositionTable.bound(e));
+    assertEquals(-1,TranspositionTable.move(e));
+    t.store(7,0,0,TranspositionTable.EXACT,RowColIndex.key(0,0));
+    e = t.probe(7);
+    assertFalse(e == TranspositionTable.MISS);
+    assertEquals(RowColIndex.key(0,0),TranspositionTable.move(e));
+    t.store(8,1,TranspositionTable.MAX_SCORE,TranspositionTable.EXACT,RowColIndex.key(40000,-7));
+    assertEquals(-1,TranspositionTable.move(t.probe(8)));
+    assertEquals(TranspositionTable.MAX_SCORE,TranspositionTable.score(t.probe(8)));
+    
+    // Depth-preferred replacement within a bucket
+    long k1 = 9, k2 = 9 + buckets, k3 = 9 + 2L*buckets;
+    t.store(k1,6,1,TranspositionTable.EXACT,-1);
+    t.store(k2,2,2,TranspositionTable.EXACT,-1);              // Shallower: second entry
+    assertEquals(1,TranspositionTable.score(t.probe(k1)));
+    assertEquals(2,TranspositionTable.score(t.probe(k2)));
+    t.store(k3,1,3,TranspositionTable.EXACT,-1);              // Replaces k2
+    assertEquals(TranspositionTable.MISS,t.probe(k2));
+    assertEquals(1,TranspositionTable.score(t.probe(k1)));
+    t.store(k2,7,4,TranspositionTable.EXACT,-1);              // Deeper: replaces k1
+    assertEquals(TranspositionTable.MISS,t.probe(k1));
+    assertEquals(3,TranspositionTable.score(t.probe(k3)));
+    t.store(k3,1,5,TranspositionTable.EXACT,-1);              // Updates in place
+    assertEquals(5,TranspositionTable.score(t.probe(k3)));
+    assertEquals(2,t.getOverwrites());
+    
+    t.clear();
+    assertEquals(0,t.getProbes());
+    t.store(12,1,1,TranspositionTable.EXACT,-1);
+    t.store(12+buckets,0,1,TranspositionTable.EXACT,-1);
+    t.store(12+2L*buckets,0,1,TranspositionTable.EXACT,-1);  // Overwrites the second entry
+    t.probe(12);
+    t.probe(12+3L*buckets);                                 // Bucket full of others
+    t.probe(13);                                            // Empty bucket
+    assertEquals(3,t.getProbes());
+    assertEquals(1,t.getHits());
+    assertEquals(1,t.getCollisions());
+    assertEquals(1,t.getOverwrites());
+    assertEquals(1.0/3,t.getHitRate(),1e-9);
+    assertEquals(1.0/3,t.getCollisionRate(),1e-9);
+    assertEquals(1.0/3,t.getOverwriteRate(),1e-9);
+    assertTrue(t.getReport(), t.getReport().startsWith("hits 33.3% collisions 33.3% of 3 probes"));
+    
+    String msg = null;
+    try{
+      t.store(1,0,TranspositionTable.MAX_SCORE+1,TranspositionTable.EXACT,-1);
+    }
+    catch(IllegalArgumentException ex){
+      msg = ex.getMessage();
+    }
+    assertEquals("Score out of range: "+(TranspositionTable.MAX_SCORE+1),msg);
+  }
+
+  @Test(timeout=5000) public void transposition_table_threads() throws InterruptedException{
+    final TranspositionTable t = new TranspositionTable(1);
+    final int buckets = t.size()/2;
+    final boolean failed[] = {false};
+    // Threads store entries whose fields all derive from the key into
+    // a few buckets; any entry read back must be consistent.
+    Thread threads[] = new Thread[4];
+    for(int n=0; n<threads.length; n++){
+      final int seed = n;
+      threads[n] = new Thread(){
+        public void run(){
+          Random rand = new Random(seed);
+          for(int i=0; i<200000; i++){
+            long key = rand.nextInt(4) + (long) buckets * rand.nextInt(64);
+            int f = (int) (key % 200);
+            if(rand.nextBoolean()){
+              t.store(key,f,-f*1000,f % 3,RowColIndex.key(f,-f));
+            }
+            else{
+              long e = t.probe(key);
+              if(e != TranspositionTable.MISS &&
+                 (TranspositionTable.depth(e) != f || TranspositionTable.score(e) != -f*1000 ||
+                  TranspositionTable.bound(e) != f % 3 || TranspositionTable.move(e) != RowColIndex.key(f,-f))){
+                failed[0] = true;
+              }
+            }
+          }
+        }
+      };
+      threads[n].start();
+    }
+    for(Thread th : threads){
+      th.join();
+    }
+    assertFalse(failed[0]);
+    assertTrue(t.getHits() > 0);
+    assertTrue(t.getCollisions() > 0);
+    assertTrue(t.getOverwrites() > 0);
+  }
+
+  @Test(timeout=5000) public void search_parallel(){
+    SparseBoard<String> b = new SparseBoard<String>("-");
+    for(int i=0; i<4; i++){
+      b.set(0,i,"X");
+      b.set(3,2*i,"O");
+    }
+    String before = b.toString();
+    for(int threads=1; threads<=4; threads++){
+      AlphaBetaSearch<String> s = new AlphaBetaSearch<String>(b,"X","O",5);
+      s.setThreads(threads);
+      assertEquals(threads,s.getThreads());
+      s.setNodeLimit(100000);
+      RowColElem<String> m = s.search("O");                 // Must block the four
+      assertEquals(0,m.getRow());
+      assertTrue(m.toString(), m.getCol() == -1 || m.getCol() == 4);
+      assertTrue(s.getNodes() <= 100000);
+      assertEquals(before,b.toString());
+    }
+    
+    b.undoSet();
+    b.undoSet();
+    AlphaBetaSearch<String> s = new AlphaBetaSearch<String>(b,"X","O",5);
+    s.setThreads(3);
+    s.setTimeLimit(100);
+    long start = System.currentTimeMillis();
+    RowColElem<String> m = s.search("X");
+    assertTrue(System.currentTimeMillis() - start < 2000);
+    assertEquals("-",b.get(m.getRow(),m.getCol()));
+    assertTrue(s.getDepthReached() >= 1);
+    assertTrue(s.getNodesPerSecond() > 0);
+    assertEquals(6,b.elementsInRowColOrder().size());
+    
+    String msg = null;
+    try{
+      s.setThreads(0);
+    }
+    catch(IllegalArgumentException e){
+      msg = e.getMessage();
+    }
+    assertEquals("Thread count must be positive: 0",msg);
+  }
+
+}
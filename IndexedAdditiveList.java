@@ -0,0 +1,328 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.ConcurrentModificationException;
+
+// IndexedAdditiveList is an AdditiveList whose nodes are also linked
+// into an indexable skip list so that positional operations take
+// O(log n) rather than walking up to n/2 nodes.  Each node carries
+// forward links at a random number of levels and, per level, the
+// number of elements its link skips; searching for a position adds up
+// those widths from the top level down.
+//
+// Level 0 of the skip list is the ordinary doubly-linked list of
+// AdditiveList (beginMarker is the skip list head), so traversal,
+// equals(), toString() and the inherited iterator methods are
+// unchanged.
+//
+// An add records the index it was made at in the node. Undo and redo
+// happen in stack order, so that index is still the node's position
+// when it is undone or redone; both remove or reinsert the node with
+// one O(log n) search.  Groups of adds are undone one node at a time.
+//
+//  get/add(idx,x)/undo/redo: O(log n) expected
+//  Space Complexity: O(n) expected
+public class IndexedAdditiveList<T> extends AdditiveList<T>{
+
+  static final int MAX_LEVEL = 32;
+
+  // Node linked at levels 0 to skip.length-1. width[i] is the number
+  // of positions between this node and skip[i]; it is only
+  // meaningful when skip[i] is not null. skip[0] is the same node as
+  // next except that it is null rather than the endMarker at the end.
+  public static class SkipNode<T> extends Node<T>{
+    SkipNode<T> skip[];
+    int width[];
+    int addedAt;              // Index of the node when it was added
+    SkipNode( T d, int levels ){
+      super( d, null, null );
+      skip = newNodes( levels );
+      width = new int[ levels ];
+    }
+  }
+
+  protected SkipNode<T> head;     // Same node as beginMarker
+  protected int level = 1;        // Levels in use
+  private long seed = 0x9E3779B97F4A7C15L;
+
+  // Scratch space for findBefore(), reused by every insert and remove
+  // so that adds, undos and redos allocate no search arrays.
+  private final SkipNode<T> update[] = newNodes( MAX_LEVEL );
+  private final int pos[] = new int[ MAX_LEVEL ];
+
+  // Pooled nodes kept apart by level: pools[l] chains, through next,
+  // the pooled nodes linked at l levels.  An add draws its level first
+  // and reuses a node of exactly that level, so pooling leaves the
+  // level distribution unchanged; it allocates, and counts a miss,
+  // when there is none.
+  private final SkipNode<T> pools[] = newNodes( MAX_LEVEL + 1 );
+
+  // Construct an empty list with unlimited undo history.
+  public IndexedAdditiveList( ){
+    this( RingStack.UNLIMITED );
+  }
+
+  // Construct an empty list which can undo at most the maxUndo most
+  // recent adds.
+  public IndexedAdditiveList( int maxUndo ){
+    this( maxUndo, false );
+  }
+
+  // Construct an empty list which can undo at most the maxUndo most
+  // recent adds, with a hash index of its elements if indexed is true.
+  public IndexedAdditiveList( int maxUndo, boolean indexed ){
+    super( maxUndo, indexed );
+    head = new SkipNode<T>( null, MAX_LEVEL );
+    head.next = endMarker;
+    endMarker.prev = head;
+    beginMarker = head;
+  }
+
+  // Allocate an array of nodes; generic arrays cannot be created directly
+  @SuppressWarnings({"unchecked","rawtypes"})
+  private static <T> SkipNode<T>[] newNodes( int n ){
+    return (SkipNode<T>[]) new SkipNode[ n ];
+  }
+
+  // Adds an item to this collection, at specified position.
+  // Items at or after that position are slid one position higher.
+  // @throws IndexOutOfBoundsException if idx is not between 0 and size(), inclusive.
+  //
+  // Complexity: O(log n) expected
+  public void add( int idx, T x ){
+    if( idx < 0 || idx > size( ) ){
+      throw new IndexOutOfBoundsException( "getNode index: " + idx + "; size: " + size( ) );
+    }
+    SkipNode<T> n = newSkipNode( x, randomLevel( ) );
+    n.addedAt = idx;
+    insertAt( idx, n );
+    undoable.push( n );
+    discardRedo( );
+  }
+
+  // A node linked at the given number of levels for a new add, from
+  // the pool if it has one of that level
+  private SkipNode<T> newSkipNode( T x, int levels ){
+    SkipNode<T> n = pools[ levels ];
+    if( n == null ){
+      if( maxPooled > 0 )
+        poolMisses++;
+      return new SkipNode<T>( x, levels );
+    }
+    pools[ levels ] = (SkipNode<T>) n.next;
+    pooled--;
+    poolHits++;
+    n.data = x; n.next = null;
+    return n;
+  }
+
+  // Pool a discarded node with the others of its level. Its skip
+  // links are cleared so the pool holds on to no other nodes.
+  protected void poolNode( Node<T> n ){
+    SkipNode<T> s = (SkipNode<T>) n;
+    Arrays.fill( s.skip, null );
+    s.next = pools[ s.skip.length ];
+    pools[ s.skip.length ] = s;
+    pooled++;
+  }
+
+  // Release a pooled node of the highest level pooled
+  protected void dropPooled( ){
+    int lvl = MAX_LEVEL;
+    while( pools[ lvl ] == null )
+      lvl--;
+    SkipNode<T> n = pools[ lvl ];
+    pools[ lvl ] = (SkipNode<T>) n.next;
+    n.next = null;
+    pooled--;
+  }
+
+  // Gets the Node at position idx, which must range from lower to
+  // upper; position size() is the endMarker.
+  //
+  // Complexity: O(log n) expected
+  protected Node<T> getNode( int idx, int lower, int upper ){
+    if( idx < lower || idx > upper ){
+      throw new IndexOutOfBoundsException( "getNode index: " + idx + "; size: " + size( ) );
+    }
+    if( idx == size( ) )
+      return endMarker;
+    SkipNode<T> p = head;
+    int pos = -1;
+    for( int i = level - 1; i >= 0; i-- ){
+      while( p.skip[ i ] != null && pos + p.width[ i ] <= idx ){
+        pos += p.width[ i ];
+        p = p.skip[ i ];
+      }
+    }
+    return p;
+  }
+
+  // Undo and redo remove or reinsert the node at the index it was
+  // added at.
+  //
+  // Complexity: O(log n) expected
+  protected void unlinkAdded( Node<T> n ){
+    removeAt( ( (SkipNode<T>) n ).addedAt );
+  }
+
+  protected void relinkAdded( Node<T> n ){
+    insertAt( ( (SkipNode<T>) n ).addedAt, (SkipNode<T>) n );
+  }
+
+  // Group members must each update the skip list widths
+  protected boolean splicesGroups(){
+    return false;
+  }
+
+  // Fill update[i] with the last node at level i before position
+  // idx and pos[i] with its position (-1 for the head).
+  private void findBefore( int idx ){
+    SkipNode<T> p = head;
+    int at = -1;
+    for( int i = MAX_LEVEL - 1; i >= 0; i-- ){
+      while( i < level && p.skip[ i ] != null && at + p.width[ i ] < idx ){
+        at += p.width[ i ];
+        p = p.skip[ i ];
+      }
+      update[ i ] = p;
+      pos[ i ] = at;
+    }
+  }
+
+  // Link node n in at position idx at each of its levels and in the
+  // level 0 doubly-linked list, widening the links that pass over it.
+  private void insertAt( int idx, SkipNode<T> n ){
+    findBefore( idx );
+    int lvl = n.skip.length;
+    if( lvl > level )
+      level = lvl;
+    for( int i = 0; i < level; i++ ){
+      SkipNode<T> u = update[ i ];
+      if( i < lvl ){
+        n.skip[ i ] = u.skip[ i ];
+        if( n.skip[ i ] != null )
+          n.width[ i ] = pos[ i ] + u.width[ i ] + 1 - idx;
+        u.skip[ i ] = n;
+        u.width[ i ] = idx - pos[ i ];
+      }
+      else if( u.skip[ i ] != null ){
+        u.width[ i ]++;
+      }
+    }
+    Node<T> prev = update[ 0 ];
+    n.prev = prev;
+    n.next = prev.next;
+    prev.next.prev = n;
+    prev.next = n;
+    theSize++;
+    modCount++;
+    indexAdd( n.data );
+    hashAdded( n );
+  }
+
+  // Unlink the node at position idx, narrowing the links that passed
+  // over it.
+  private void removeAt( int idx ){
+    findBefore( idx );
+    SkipNode<T> n = update[ 0 ].skip[ 0 ];
+    int lvl = n.skip.length;
+    for( int i = 0; i < level; i++ ){
+      SkipNode<T> u = update[ i ];
+      if( i < lvl ){
+        u.skip[ i ] = n.skip[ i ];
+        if( u.skip[ i ] != null )
+          u.width[ i ] += n.width[ i ] - 1;
+      }
+      else if( u.skip[ i ] != null ){
+        u.width[ i ]--;
+      }
+    }
+    n.prev.next = n.next;
+    n.next.prev = n.prev;
+    theSize--;
+    modCount++;
+    indexRemove( n.data );
+    hashRemoved( n );
+  }
+
+  // Return the node k positions after node p, which is at index idx,
+  // with one positional search so spliterators split in O(log n).
+  //
+  // Complexity: O(log n) expected
+  protected Node<T> nodeAfter( Node<T> p, int idx, int k ){
+    return getNode( idx + k, 0, size( ) );
+  }
+
+  // Splits use the skip list, not checkpoints
+  protected void prepareSplits( ){
+  }
+
+  // Level for a new node, geometric with p = 1/2 (xorshift random bits)
+  private int randomLevel(){
+    seed ^= seed << 13;
+    seed ^= seed >>> 7;
+    seed ^= seed << 17;
+    return 1 + Long.numberOfTrailingZeros( seed | ( 1L << ( MAX_LEVEL - 1 ) ) );
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////
+  // Iteration Methods
+  //
+  // The iterators are AdditiveList's with add(x) going through the
+  // skip list.
+  public Iterator<T> iterator( ){
+    return new IndexedIterator( 0 );
+  }
+
+  public ListIterator<T> listIterator( ){
+    return new IndexedIterator( 0 );
+  }
+
+  public ListIterator<T> listIterator( int idx ){
+    return new IndexedIterator( idx );
+  }
+
+  // AListIterator which tracks its index so that add(x) can insert
+  // into the skip list at the iterator's position.
+  public class IndexedIterator extends AListIterator{
+    protected int index;                       // Index of the element next() returns
+
+    public IndexedIterator( int idx ){
+      super( idx );
+      index = idx;
+    }
+
+    public T next( ){
+      T x = super.next( );
+      index++;
+      return x;
+    }
+
+    public T previous( ){
+      T x = super.previous( );
+      index--;
+      return x;
+    }
+
+    // Add x to the list before the element that would be returned by
+    // a call to next(). The add can be undone with the list's undo().
+    //
+    // Complexity: O(log n) expected
+    public void add( T x ){
+      if( expectedModCount != modCount )
+        throw new ConcurrentModificationException( );
+      IndexedAdditiveList.this.add( index, x );
+      index++;
+      expectedModCount = modCount;
+    }
+
+    public int nextIndex(){
+      return index;
+    }
+
+    public int previousIndex(){
+      return index - 1;
+    }
+  }
+}
@@ -0,0 +1,290 @@
+import java.util.*;
+
+// A SparseBoard specialised for int elements.  It has the same
+// semantics as ExpandableBoard (fill element, extents, undo/redo and
+// the earliest longest sequence) but elements are stored and compared
+// as raw ints so no cell is ever boxed.  Only getLongestSequence(),
+// which must return RowColElem triples, boxes its results.
+//
+// asBoard() provides a view of the board as a WinCheckBoard<Integer>
+// for code written against the generic interfaces.
+//
+// The elements are held by a RunTracker, as SparseBoard's palette
+// codes are, so the board shares SparseBoard's run tracking, bounded
+// undo history, checkWinAt() and Zobrist hash.  The elements
+// themselves serve as the codes.
+//
+//  Space Complexity: O(E)
+//  E: The number of elements that have been set on the board
+public class IntSparseBoard{
+
+  int fillElem;
+  int minRow, maxRow, minCol, maxCol;
+  RunTracker runs;             // Slots hold the elements as codes
+
+  // Workhorse constructor, an empty board with the given extent and
+  // fill element.
+  public IntSparseBoard(int minRow, int maxRow, int minCol, int maxCol, int fillElem){
+    this(minRow,maxRow,minCol,maxCol,fillElem,RingStack.UNLIMITED);
+  }
+
+  // Workhorse constructor with a bounded history: at most the maxUndo
+  // most recent sets can be undone. Throws an
+  // IllegalArgumentException if maxUndo is not positive.
+  public IntSparseBoard(int minRow, int maxRow, int minCol, int maxCol, int fillElem, int maxUndo){
+    this.runs = new RunTracker(maxUndo);
+    this.minRow = minRow;
+    this.maxRow = maxRow;
+    this.minCol = minCol;
+    this.maxCol = maxCol;
+    this.fillElem = fillElem;
+  }
+
+  // Convenience 1-arg constructor, a single cell board at 0,0.
+  public IntSparseBoard(int fillElem){
+    this(0,0,0,0,fillElem);
+  }
+
+  // Convenience 2-arg constructor, copies elements from a 2-D array
+  // with 0,0 at the upper left. The board has no undo/redo history.
+  public IntSparseBoard(int[][] x, int fillElem){
+    this(0,x.length - 1, 0, x[0].length - 1, fillElem);
+    for (int i = 0; i < x.length; i++){
+      for (int n = 0; n < x[i].length; n++){
+        this.set(i,n,x[i][n]);
+        runs.clearUndo();
+      }
+    }
+  }
+
+  public int getMinRow(){
+    return this.minRow;
+  }
+
+  public int getMaxRow(){
+    return this.maxRow;
+  }
+
+  public int getMinCol(){
+    return this.minCol;
+  }
+
+  public int getMaxCol(){
+    return this.maxCol;
+  }
+
+  public int getFillElem(){
+    return this.fillElem;
+  }
+
+  // Change the fill element; only the field changes.
+  //
+  // Complexity: O(1) (worst-case)
+  public void setFillElem(int f){
+    this.fillElem = f;
+  }
+
+  // Grow the extent to include row/col. Always returns 0.
+  //
+  // Complexity: O(1) (worst-case)
+  public int expandToInclude(int row, int col){
+    if (row < minRow)
+      minRow = row;
+    else if (row > maxRow)
+      maxRow = row;
+
+    if (col < minCol)
+      minCol = col;
+    else if (col > maxCol)
+      maxCol = col;
+
+    return 0;
+  }
+
+  // Retrieve the element at row/col, the fill element if it is beyond
+  // the extent or has not been set.
+  //
+  // Complexity: O(1) (expected)
+  public int get(int row, int col){
+    if (row < minRow || row > maxRow || col < minCol || col > maxCol)
+      return fillElem;
+    int slot = runs.slotAt(row,col);
+    return (slot == RowColIndex.NOT_FOUND) ? fillElem : runs.codes[slot];
+  }
+
+  // Set element at row/col to x with the rules of
+  // ExpandableBoard.set(); setting the fill element has no effect.
+  //
+  // Complexity: O(1) (amortized expected)
+  public void set(int row, int col, int x){
+    long key = RowColIndex.key(row,col);
+    int prev = runs.index.get(key);
+    if (prev != RowColIndex.NOT_FOUND)
+      throw new RuntimeException(String.format("Element %d %d already set to %d",
+                                               row,col,runs.codes[prev]));
+    if (x == fillElem)
+      return;
+
+    expandToInclude(row,col);
+    runs.add(key,x);
+    runs.clearRedo();
+  }
+
+  // Undo the most recent set.
+  //
+  // Complexity: O(1) (expected)
+  public void undoSet(){
+    runs.undo();
+  }
+
+  // Redo a set undone by undoSet().
+  //
+  // Complexity: O(1) (expected)
+  public void redoSet(){
+    runs.redo();
+  }
+
+  // Return true if any sets can be undone and false otherwise.
+  public boolean canUndo(){
+    return runs.canUndo();
+  }
+
+  // Return true if any undone sets can be redone and false otherwise.
+  public boolean canRedo(){
+    return runs.canRedo();
+  }
+
+  // Return the maximum number of sets that can be undone
+  public int getMaxUndo(){
+    return runs.maxUndo;
+  }
+
+  // Return true if the element at row/col is part of a run of at
+  // least k equal elements; false for unset cells.
+  //
+  // Complexity: O(k) (expected), no allocation
+  public boolean checkWinAt(int row, int col, int k){
+    return runs.checkWinAt(row,col,k);
+  }
+
+  // Return a 64-bit hash of the elements on the board, kept current
+  // by set(), undoSet() and redoSet(); the elements are hashed as
+  // their own codes.
+  //
+  // Complexity: O(1) (worst-case)
+  public long getZobristHash(){
+    return runs.zobristHash;
+  }
+
+  // Length of the current longest sequence, 0 if there is none
+  public int longestLength(){
+    return runs.longestLen;
+  }
+
+  // Retrieve the longest sequence present on the board as an
+  // independent list; ties favor the earliest to appear.
+  //
+  // Complexity: O(L) (expected)
+  //  L: length of the longest sequence
+  public List< RowColElem<Integer> > getLongestSequence(){
+    List<RowColElem<Integer>> seq = new ArrayList<RowColElem<Integer>>();
+    for (int i = 0; i < runs.longestLen; i++){
+      int slot = runs.longestSlot(i);
+      long key = runs.keys[slot];
+      seq.add(new RowColElem<Integer>(RowColIndex.keyRow(key),RowColIndex.keyCol(key),
+                                      runs.codes[slot]));
+    }
+    return seq;
+  }
+
+  // toString() - create a pretty representation of board in the same
+  // format as SparseBoard.
+  //
+  // Complexity: O(R*C)
+  //   R: number of rows
+  //   C: number of columns
+  public String toString(){
+    StringBuilder sb = new StringBuilder();
+
+    sb.append("    |");
+    for (int c = minCol; c <= maxCol; c++)
+      sb.append(String.format("%3d|",c));
+    sb.append("\n");
+    appendDivider(sb);
+
+    for (int r = minRow; r <= maxRow; r++){
+      sb.append(String.format("%3d |",r));
+      for (int c = minCol; c <= maxCol; c++)
+        sb.append(String.format("%3d|",get(r,c)));
+      sb.append("\n");
+      appendDivider(sb);
+    }
+
+    return sb.toString();
+  }
+
+  // Append a +---+---+ divider line spanning the columns of the board
+  private void appendDivider(StringBuilder sb){
+    sb.append("    +");
+    for (int c = minCol; c <= maxCol; c++)
+      sb.append("---+");
+    sb.append("\n");
+  }
+
+  // Return a view of this board as a WinCheckBoard<Integer>.
+  // Elements are boxed and unboxed as they cross the view; the view
+  // and the board share all state.
+  public WinCheckBoard<Integer> asBoard(){
+    return new BoxedView();
+  }
+
+  // WinCheckBoard<Integer> view of the enclosing IntSparseBoard
+  public class BoxedView implements WinCheckBoard<Integer>{
+    public Integer getFillElem(){
+      return IntSparseBoard.this.getFillElem();
+    }
+    public void setFillElem(Integer f){
+      if (f == null)
+        throw new RuntimeException("Cannot set elements to null");
+      IntSparseBoard.this.setFillElem(f);
+    }
+    public int getMaxRow(){
+      return IntSparseBoard.this.getMaxRow();
+    }
+    public int getMaxCol(){
+      return IntSparseBoard.this.getMaxCol();
+    }
+    public int getMinRow(){
+      return IntSparseBoard.this.getMinRow();
+    }
+    public int getMinCol(){
+      return IntSparseBoard.this.getMinCol();
+    }
+    public Integer get(int row, int col){
+      return IntSparseBoard.this.get(row,col);
+    }
+    public void set(int row, int col, Integer x){
+      if (x == null)
+        throw new RuntimeException("Cannot set elements to null");
+      IntSparseBoard.this.set(row,col,x);
+    }
+    public List< RowColElem<Integer> > getLongestSequence(){
+      return IntSparseBoard.this.getLongestSequence();
+    }
+    public void undoSet(){
+      IntSparseBoard.this.undoSet();
+    }
+    public void redoSet(){
+      IntSparseBoard.this.redoSet();
+    }
+    public boolean checkWinAt(int row, int col, int k){
+      return IntSparseBoard.this.checkWinAt(row,col,k);
+    }
+    public long getZobristHash(){
+      return IntSparseBoard.this.getZobristHash();
+    }
+    public String toString(){
+      return IntSparseBoard.this.toString();
+    }
+  }
+}
@@ -0,0 +1,101 @@
+import java.util.Arrays;
+
+// LongArrayStack class, an array-based stack of long items such as
+// packed moves.  Items are held in a growable long[] so no push
+// boxes its item and pushes only allocate when the array must grow.
+//
+// CONSTRUCTION: with no initializer or an initial capacity
+//
+// ******************PUBLIC OPERATIONS*********************
+// void push( x )         --> Insert x
+// void pop( )            --> Remove most recently inserted item
+// long getTop( )         --> Return most recently inserted item
+// long topAndPop( )      --> Return and remove most recent item
+// boolean isEmpty( )     --> Return true if empty; else false
+// void clear( )          --> Remove all items
+// int size( )            --> Return the number of items
+// long get( i )          --> Return the i'th item from the bottom
+// ******************ERRORS********************************
+// getTop, pop, or topAndPop on empty stack
+//
+//  push: O(1) (amortized), all other operations O(1) (worst-case)
+public class LongArrayStack{
+
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private long items[];       // items[0..theSize-1], bottom first
+  private int theSize;
+
+  // Construct the stack.
+  public LongArrayStack( ) {
+    this( DEFAULT_CAPACITY );
+  }
+
+  // Construct the stack with room for capacity items before growing.
+  public LongArrayStack( int capacity ) {
+    items = new long[ Math.max( capacity, 1 ) ];
+    theSize = 0;
+  }
+
+  // Test if the stack is logically empty.
+  // @return true if empty, false otherwise.
+  public boolean isEmpty( ) {
+    return theSize == 0;
+  }
+
+  // Return the number of items on the stack.
+  public int size( ) {
+    return theSize;
+  }
+
+  // Make the stack logically empty.
+  public void clear( ) {
+    theSize = 0;
+  }
+
+  // Insert a new item into the stack.
+  // @param x the item to insert.
+  public void push( long x ) {
+    if( theSize == items.length )
+      items = Arrays.copyOf( items, 2 * theSize );
+    items[ theSize++ ] = x;
+  }
+
+  // Remove the most recently inserted item from the stack.
+  // @throws RuntimeException if the stack is empty.
+  public void pop( ) {
+    if( isEmpty( ) )
+      throw new RuntimeException( "LongArrayStack pop" );
+    theSize--;
+  }
+
+  // Get the most recently inserted item in the stack.
+  // Does not alter the stack.
+  // @return the most recently inserted item in the stack.
+  // @throws RuntimeException if the stack is empty.
+  public long getTop( ) {
+    if( isEmpty( ) )
+      throw new RuntimeException( "LongArrayStack empty in getTop" );
+    return items[ theSize - 1 ];
+  }
+
+  // Return and remove the most recently inserted item
+  // from the stack.
+  // @return the most recently inserted item in the stack.
+  // @throws RuntimeException if the stack is empty.
+  public long topAndPop( ) {
+    if( isEmpty( ) )
+      throw new RuntimeException( "LongArrayStack empty in topAndPop" );
+    return items[ --theSize ];
+  }
+
+  // Return the i'th item from the bottom of the stack; 0 is the
+  // oldest item and size()-1 the top.
+  // @throws IndexOutOfBoundsException if i is not in 0..size()-1.
+  public long get( int i ) {
+    if( i < 0 || i >= theSize )
+      throw new IndexOutOfBoundsException( "LongArrayStack index " + i );
+    return items[ i ];
+  }
+
+}
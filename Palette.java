@@ -0,0 +1,101 @@
+import java.util.*;
+
+// A Palette interns each distinct element (by equals()) to a small
+// integer code so that boards can store and compare ints instead of
+// element references.  Codes are assigned in order of first
+// appearance starting at 0 and are never reused; the element for a
+// code is the first instance interned with it.
+//
+// Boards only require elements to define equals(), not hashCode().
+// Elements whose class defines hashCode() are looked up in a HashMap,
+// which assumes the two are consistent as Object requires; elements
+// which inherit Object's identity hashCode() are kept in a list and
+// found by scanning it with equals().  Repeats of the last element
+// interned, the usual case when players alternate few elements, are
+// answered with one equals() call.
+//
+//  Space Complexity: O(P)
+//  P: The number of distinct elements interned
+public class Palette<T>{
+
+  private ArrayList<T> elems = new ArrayList<T>();
+  private HashMap<T,Integer> hashed = new HashMap<T,Integer>();
+  private ArrayList<Integer> unhashed = new ArrayList<Integer>(); // Codes of the others
+  private HashMap<Class<?>,Boolean> hashes = new HashMap<Class<?>,Boolean>();
+  private int lastCode = -1;   // Code most recently returned by intern()
+
+  // Return the code for x, assigning a new one if x has not been seen.
+  //
+  // Complexity: O(1) (expected) if x's class defines hashCode(),
+  // otherwise O(P) (worst-case); O(1) when x repeats the last element
+  public int intern(T x){
+    int code = codeOf(x);
+    if(code == -1){
+      code = elems.size();
+      elems.add(x);
+      if(definesHashCode(x)){
+        hashed.put(x, code);
+      }
+      else{
+        unhashed.add(code);
+      }
+    }
+    lastCode = code;
+    return code;
+  }
+
+  // Return the code for x or -1 if x has not been interned
+  //
+  // Complexity: as intern()
+  public int codeOf(T x){
+    if(lastCode != -1 && x.equals(elems.get(lastCode))){
+      return lastCode;
+    }
+    if(!definesHashCode(x)){
+      for(int i=0; i<elems.size(); i++){
+        if(x.equals(elems.get(i))){
+          return i;
+        }
+      }
+      return -1;
+    }
+    Integer code = hashed.get(x);
+    if(code != null){
+      return code;
+    }
+    for(int i : unhashed){
+      if(x.equals(elems.get(i))){
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  // Whether the class of x overrides Object.hashCode(), cached per class
+  private boolean definesHashCode(T x){
+    Class<?> c = x.getClass();
+    Boolean h = hashes.get(c);
+    if(h == null){
+      try{
+        h = c.getMethod("hashCode").getDeclaringClass() != Object.class;
+      }
+      catch(NoSuchMethodException e){
+        h = false;
+      }
+      hashes.put(c, h);
+    }
+    return h;
+  }
+
+  // Return the element for a code
+  //
+  // Complexity: O(1) (worst-case)
+  public T elem(int code){
+    return elems.get(code);
+  }
+
+  // Return the number of distinct elements interned
+  public int size(){
+    return elems.size();
+  }
+}
@@ -0,0 +1,164 @@
+// RingStack class, a stack which holds at most a fixed number of
+// items.  Items are kept in a circular array; pushing onto a full
+// stack overwrites and drops the oldest item rather than growing, so
+// a stack used for undo history keeps only the most recent
+// operations.  The array grows by doubling until it reaches the
+// maximum size so that a large or unlimited maximum costs nothing
+// until it is used.
+//
+// CONSTRUCTION: with no initializer (unlimited) or a maximum size
+//
+// ******************PUBLIC OPERATIONS*********************
+// void push( x )         --> Insert x, dropping the oldest item if full
+// void pop( )            --> Remove most recently inserted item
+// AnyType getTop( )      --> Return most recently inserted item
+// AnyType topAndPop( )   --> Return and remove most recent item
+// boolean isEmpty( )     --> Return true if empty; else false
+// void clear( )          --> Remove all items
+// int size( )            --> Return the number of items
+// int getMaxSize( )      --> Return the maximum number of items kept
+// AnyType get( i )       --> Return the i'th item from the bottom
+// long memoryBytes( )    --> Estimated bytes used by the stack's array
+// ******************ERRORS********************************
+// getTop, pop, or topAndPop on empty stack
+//
+//  push: O(1) (amortized), all other operations O(1) (worst-case)
+//  except clear() which is O(N) to release references
+public class RingStack<AnyType>{
+
+  public static final int UNLIMITED = Integer.MAX_VALUE;
+
+  // Estimated sizes used by memoryBytes(), assuming uncompressed
+  // 8 byte references
+  static final int REF_BYTES = 8;
+  static final int ARRAY_HEADER_BYTES = 16;
+
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private final int maxSize;
+  private Object items[];     // Circular; bottom at items[first]
+  private int first;          // Array index of the oldest item
+  private int theSize;
+
+  // Construct a stack with no maximum size.
+  public RingStack( ) {
+    this( UNLIMITED );
+  }
+
+  // Construct a stack which keeps at most maxSize items.
+  // @throws IllegalArgumentException if maxSize is not positive.
+  public RingStack( int maxSize ) {
+    if( maxSize < 1 )
+      throw new IllegalArgumentException( "RingStack size must be positive: " + maxSize );
+    this.maxSize = maxSize;
+    items = new Object[ Math.min( maxSize, DEFAULT_CAPACITY ) ];
+    first = 0;
+    theSize = 0;
+  }
+
+  // Test if the stack is logically empty.
+  // @return true if empty, false otherwise.
+  public boolean isEmpty( ) {
+    return theSize == 0;
+  }
+
+  // Return the number of items on the stack.
+  public int size( ) {
+    return theSize;
+  }
+
+  // Return the maximum number of items the stack keeps.
+  public int getMaxSize( ) {
+    return maxSize;
+  }
+
+  // Make the stack logically empty. References are cleared so the
+  // items can be collected; the array keeps its capacity.
+  public void clear( ) {
+    for( int i = 0; i < theSize; i++ )
+      items[ at( i ) ] = null;
+    first = 0;
+    theSize = 0;
+  }
+
+  // Insert a new item into the stack. If the stack already holds
+  // getMaxSize() items the oldest is dropped.
+  // @param x the item to insert.
+  public void push( AnyType x ) {
+    if( theSize == maxSize ) {                 // Full: x replaces the oldest
+      items[ first ] = x;
+      first = ( first + 1 ) % items.length;
+      return;
+    }
+    if( theSize == items.length )
+      grow( );
+    items[ at( theSize++ ) ] = x;
+  }
+
+  // Remove the most recently inserted item from the stack.
+  // @throws RuntimeException if the stack is empty.
+  public void pop( ) {
+    if( isEmpty( ) )
+      throw new RuntimeException( "RingStack pop" );
+    items[ at( --theSize ) ] = null;
+  }
+
+  // Get the most recently inserted item in the stack.
+  // Does not alter the stack.
+  // @return the most recently inserted item in the stack.
+  // @throws RuntimeException if the stack is empty.
+  @SuppressWarnings("unchecked")
+  public AnyType getTop( ) {
+    if( isEmpty( ) )
+      throw new RuntimeException( "RingStack empty in getTop" );
+    return (AnyType) items[ at( theSize - 1 ) ];
+  }
+
+  // Return and remove the most recently inserted item
+  // from the stack.
+  // @return the most recently inserted item in the stack.
+  // @throws RuntimeException if the stack is empty.
+  @SuppressWarnings("unchecked")
+  public AnyType topAndPop( ) {
+    if( isEmpty( ) )
+      throw new RuntimeException( "RingStack empty in topAndPop" );
+    int i = at( --theSize );
+    AnyType topItem = (AnyType) items[ i ];
+    items[ i ] = null;
+    return topItem;
+  }
+
+  // Return the i'th item from the bottom of the stack; 0 is the
+  // oldest item kept and size()-1 the top.
+  // @throws IndexOutOfBoundsException if i is not in 0..size()-1.
+  @SuppressWarnings("unchecked")
+  public AnyType get( int i ) {
+    if( i < 0 || i >= theSize )
+      throw new IndexOutOfBoundsException( "RingStack index " + i );
+    return (AnyType) items[ at( i ) ];
+  }
+
+  // Estimated bytes used by the stack's array, not counting the
+  // items themselves.
+  public long memoryBytes( ) {
+    return ARRAY_HEADER_BYTES + (long) REF_BYTES * items.length;
+  }
+
+  // Array index of the i'th item from the bottom
+  private int at( int i ) {
+    int j = first + i;
+    return ( j >= items.length ) ? j - items.length : j;
+  }
+
+  // Double the array, up to maxSize, unrolling the items so the
+  // oldest is at index 0
+  private void grow( ) {
+    int cap = (int) Math.min( (long) maxSize, 2L * items.length );
+    Object bigger[] = new Object[ cap ];
+    for( int i = 0; i < theSize; i++ )
+      bigger[ i ] = items[ at( i ) ];
+    items = bigger;
+    first = 0;
+  }
+
+}
@@ -1,9 +1,9 @@
 // Simple class to encapsulate a triple row,col,element in boards.
 // The class is immutable
 public class RowColElem<T>{
-  private int row;
-  private int col;
-  private T elem;
+  private final int row;
+  private final int col;
+  private final T elem;
 
   // Create a RowColElem with the parameter parts
   public RowColElem(int r, int c, T e){
@@ -46,4 +46,11 @@ public class RowColElem<T>{
       this.col == that.col &&
       this.elem.equals(that.elem);
   }
+
+  // Return a hash code consistent with equals(): combines the row,
+  // column and the element's hash code
+  public int hashCode(){
+    int h = 31*this.row + this.col;
+    return 31*h + this.elem.hashCode();
+  }
 }
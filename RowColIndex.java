@@ -0,0 +1,176 @@
+// RowColIndex maps a packed (row,col) coordinate to an integer slot
+// using an open-addressing hash table with linear probing.  Boards
+// use it to locate the explicitly set element at a position without
+// scanning every element that has been set.  Removal uses backward
+// shift deletion so no tombstones accumulate as sets are undone and
+// redone.
+//
+//  Space Complexity: O(E)
+//  E: The number of keys present in the index
+public class RowColIndex{
+
+  public static final int NOT_FOUND = -1; // Returned by get() for absent keys
+
+  private static final int MIN_CAPACITY = 16;
+
+  private long keys[];         // Packed coordinates
+  private int slots[];         // Slot associated with each key
+  private boolean used[];      // Whether a table position holds a key
+  private int theSize;         // Number of keys present
+  private int mask;            // keys.length-1; capacity is a power of 2
+
+  // Construct an empty index
+  public RowColIndex(){
+    this(MIN_CAPACITY);
+  }
+
+  // Construct an empty index which can hold roughly the given number
+  // of keys before it has to grow
+  public RowColIndex(int expected){
+    int cap = MIN_CAPACITY;
+    while(cap < 2*expected){
+      cap <<= 1;
+    }
+    allocate(cap);
+  }
+
+  // Pack a row/col pair into a single long; row in the high 32 bits,
+  // col in the low 32 bits.
+  public static long key(int row, int col){
+    return ((long) row << 32) | (col & 0xFFFFFFFFL);
+  }
+
+  // Recover the row from a packed key
+  public static int keyRow(long key){
+    return (int) (key >> 32);
+  }
+
+  // Recover the column from a packed key
+  public static int keyCol(long key){
+    return (int) key;
+  }
+
+  // Return the number of keys in the index
+  public int size(){
+    return this.theSize;
+  }
+
+  // Return the slot associated with row/col or NOT_FOUND
+  //
+  // Complexity: O(1) (expected)
+  public int get(int row, int col){
+    return get(key(row,col));
+  }
+
+  // Return the slot associated with the packed key or NOT_FOUND
+  //
+  // Complexity: O(1) (expected)
+  public int get(long key){
+    int i = hash(key) & mask;
+    while(used[i]){
+      if(keys[i] == key){
+        return slots[i];
+      }
+      i = (i+1) & mask;
+    }
+    return NOT_FOUND;
+  }
+
+  // Return true if the packed key is present
+  public boolean contains(long key){
+    return get(key) != NOT_FOUND;
+  }
+
+  // Associate the packed key with the given slot replacing any
+  // previous association.
+  //
+  // Complexity: O(1) (amortized expected)
+  public void put(long key, int slot){
+    if(2*(theSize+1) > keys.length){
+      rehash(keys.length << 1);
+    }
+    int i = hash(key) & mask;
+    while(used[i]){
+      if(keys[i] == key){
+        slots[i] = slot;
+        return;
+      }
+      i = (i+1) & mask;
+    }
+    used[i] = true;
+    keys[i] = key;
+    slots[i] = slot;
+    theSize++;
+  }
+
+  // Remove the packed key from the index if present. Subsequent keys
+  // in the probe run are shifted back so lookups never need
+  // tombstones.
+  //
+  // Complexity: O(1) (expected)
+  public void remove(long key){
+    int i = hash(key) & mask;
+    while(used[i]){
+      if(keys[i] == key){
+        break;
+      }
+      i = (i+1) & mask;
+    }
+    if(!used[i]){
+      return;
+    }
+    int hole = i;
+    int j = (i+1) & mask;
+    while(used[j]){
+      int home = hash(keys[j]) & mask;
+      // Shift keys[j] into the hole unless its home lies cyclically
+      // within (hole, j]
+      boolean stays = (hole <= j) ? (hole < home && home <= j) : (hole < home || home <= j);
+      if(!stays){
+        keys[hole] = keys[j];
+        slots[hole] = slots[j];
+        hole = j;
+      }
+      j = (j+1) & mask;
+    }
+    used[hole] = false;
+    theSize--;
+  }
+
+  // Remove all keys from the index
+  public void clear(){
+    java.util.Arrays.fill(used,false);
+    theSize = 0;
+  }
+
+  // Mix the bits of a key so that nearby coordinates spread across
+  // the table (finalizer from MurmurHash3)
+  private static int hash(long key){
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return (int) key;
+  }
+
+  private void allocate(int cap){
+    keys = new long[cap];
+    slots = new int[cap];
+    used = new boolean[cap];
+    mask = cap-1;
+    theSize = 0;
+  }
+
+  private void rehash(int cap){
+    long oldKeys[] = keys;
+    int oldSlots[] = slots;
+    boolean oldUsed[] = used;
+    allocate(cap);
+    for(int i=0; i<oldKeys.length; i++){
+      if(oldUsed[i]){
+        put(oldKeys[i],oldSlots[i]);
+      }
+    }
+  }
+}
@@ -0,0 +1,220 @@
+// RowColSkipList keeps board positions, given as packed row/col keys
+// from RowColIndex, sorted in one of the four orders used by
+// SparseBoard. Each position carries the integer slot of its element.
+//
+// Levels are doubly linked. Like AdditiveList, an unlinked node keeps
+// its own links, so relink() can put it back in O(1) as long as
+// nodes are unlinked and relinked in stack order. Boards meet that
+// requirement because undo/redo always act on the most recent set.
+//
+//  insert: O(log n) expected
+//  append: O(1) expected, for keys arriving in sorted order
+//  unlink/relink: O(1) expected (proportional to the node's level)
+//  firstOnLine: O(log n) expected
+public class RowColSkipList{
+
+  // Orders; each sorts on a primary line number then a secondary
+  // position along the line
+  public static final int ROW_COL = 0;    // row, then col
+  public static final int COL_ROW = 1;    // col, then row
+  public static final int DIAG_ROW = 2;   // col-row, then row
+  public static final int ADIAG_REV_ROW = 3; // row+col, then row descending
+
+  static final int MAX_LEVEL = 32;
+
+  // A skip list node. next[i]/prev[i] link the node at level i.
+  public static class Node{
+    public final long key;
+    public final int slot;
+    Node next[], prev[];
+
+    Node(long key, int slot, int levels){
+      this.key = key;
+      this.slot = slot;
+      this.next = new Node[levels];
+      this.prev = new Node[levels];
+    }
+
+    // Return the following node in the order or null at the end
+    public Node next(){
+      return next[0];
+    }
+  }
+
+  private final int order;
+  private final Node head = new Node(0, -1, MAX_LEVEL);  // Dummy node before the first
+  private int level = 1;        // Levels in use
+  private int theSize = 0;
+  private long seed = 0x2545F4914F6CDD1DL;
+  protected int modCount = 0;  // Tracks modifications for iterators
+
+  // Construct an empty list sorted in the given order
+  public RowColSkipList(int order){
+    if(order < ROW_COL || order > ADIAG_REV_ROW){
+      throw new IllegalArgumentException("Unknown order: "+order);
+    }
+    this.order = order;
+  }
+
+  // Return the number of positions in the list
+  public int size(){
+    return this.theSize;
+  }
+
+  // Return the first node in order or null if the list is empty
+  public Node first(){
+    return head.next[0];
+  }
+
+  // Primary line number of a packed key in the given order
+  public static long line(int order, long key){
+    long row = RowColIndex.keyRow(key), col = RowColIndex.keyCol(key);
+    switch(order){
+      case ROW_COL:  return row;
+      case COL_ROW:  return col;
+      case DIAG_ROW: return col - row;
+      default:       return row + col;
+    }
+  }
+
+  // Secondary position of a packed key along its line
+  private static long along(int order, long key){
+    long row = RowColIndex.keyRow(key), col = RowColIndex.keyCol(key);
+    switch(order){
+      case ROW_COL:       return col;
+      case ADIAG_REV_ROW: return -row;
+      default:            return row;
+    }
+  }
+
+  // Compare two packed keys in this list's order
+  private int compare(long a, long b){
+    int c = Long.compare(line(order,a), line(order,b));
+    return (c != 0) ? c : Long.compare(along(order,a), along(order,b));
+  }
+
+  // Insert a position and its slot. Positions must be unique.
+  //
+  // Complexity: O(log n) expected
+  public Node insert(long key, int slot){
+    Node update[] = new Node[MAX_LEVEL];
+    Node p = head;
+    for(int i=level-1; i>=0; i--){
+      while(p.next[i] != null && compare(p.next[i].key, key) < 0){
+        p = p.next[i];
+      }
+      update[i] = p;
+    }
+    int lvl = randomLevel();
+    for(int i=level; i<lvl; i++){
+      update[i] = head;
+    }
+    if(lvl > level){
+      level = lvl;
+    }
+    Node n = new Node(key, slot, lvl);
+    for(int i=0; i<lvl; i++){
+      n.prev[i] = update[i];
+      n.next[i] = update[i].next[i];
+    }
+    relink(n);
+    return n;
+  }
+
+  // Return the last node at each level, or the head for levels with
+  // no nodes, for use with append().
+  //
+  // Complexity: O(log n) expected
+  public Node[] tails(){
+    Node tails[] = new Node[MAX_LEVEL];
+    Node p = head;
+    for(int i=MAX_LEVEL-1; i>=0; i--){
+      while(p.next[i] != null){
+        p = p.next[i];
+      }
+      tails[i] = p;
+    }
+    return tails;
+  }
+
+  // Add a position after every position in the list, as when
+  // building the list from keys that are already sorted. tails must
+  // come from tails() and is updated so that appends can continue;
+  // no other changes may be made to the list in between.
+  //
+  // Complexity: O(1) expected
+  public Node append(Node tails[], long key, int slot){
+    int lvl = randomLevel();
+    if(lvl > level){
+      level = lvl;
+    }
+    Node n = new Node(key, slot, lvl);
+    for(int i=0; i<lvl; i++){
+      n.prev[i] = tails[i];
+      tails[i] = n;
+    }
+    relink(n);
+    return n;
+  }
+
+  // Remove a node, leaving its own links intact so that relink() can
+  // restore it.
+  //
+  // Complexity: O(1) expected
+  public void unlink(Node n){
+    for(int i=0; i<n.next.length; i++){
+      n.prev[i].next[i] = n.next[i];
+      if(n.next[i] != null){
+        n.next[i].prev[i] = n.prev[i];
+      }
+    }
+    theSize--;
+    modCount++;
+  }
+
+  // Restore a node removed by unlink(). Only valid if the list is in
+  // the state it was in when the node was unlinked.
+  //
+  // Complexity: O(1) expected
+  public void relink(Node n){
+    for(int i=0; i<n.next.length; i++){
+      n.prev[i].next[i] = n;
+      if(n.next[i] != null){
+        n.next[i].prev[i] = n;
+      }
+    }
+    theSize++;
+    modCount++;
+  }
+
+  // Return the first node on the given line (row for ROW_COL, col for
+  // COL_ROW, col-row for DIAG_ROW, row+col for ADIAG_REV_ROW) or null
+  // if no position lies on it. Following next() while line() is
+  // unchanged visits the whole line in order.
+  //
+  // Complexity: O(log n) expected
+  public Node firstOnLine(long lineNumber){
+    Node p = head;
+    for(int i=level-1; i>=0; i--){
+      while(p.next[i] != null && line(order,p.next[i].key) < lineNumber){
+        p = p.next[i];
+      }
+    }
+    Node n = p.next[0];
+    return (n != null && line(order,n.key) == lineNumber) ? n : null;
+  }
+
+  // Return the order of this list
+  public int getOrder(){
+    return this.order;
+  }
+
+  // Level for a new node, geometric with p = 1/2 (xorshift random bits)
+  private int randomLevel(){
+    seed ^= seed << 13;
+    seed ^= seed >>> 7;
+    seed ^= seed << 17;
+    int lvl = 1 + Long.numberOfTrailingZeros(seed | (1L << (MAX_LEVEL-1)));
+    return Math.min(lvl, MAX_LEVEL);
+  }
+}
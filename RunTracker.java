@@ -0,0 +1,318 @@
+import java.util.*;
+
+// RunTracker holds the elements set on a sparse board as integer
+// codes and maintains the runs of equal codes they form, along with
+// the undo/redo history of the sets.  SparseBoard stores Palette
+// codes in it and IntSparseBoard raw ints; the boards keep their
+// extents and element types and call add(), undo() and redo() for
+// the sets themselves.
+//
+// Each set element occupies a slot numbered in the order in which it
+// was set: keys[i] is its packed row/col and codes[i] its code.
+// Slots below nSet are on the board and those from nSet up to nRedo
+// may be redone. Slots below undoFloor cannot be undone, because they
+// were loaded by a constructor or have dropped out of a bounded
+// history. index maps the packed row/col of every element on the
+// board to its slot.
+//
+// Each element records the length of the run it ends in each of the
+// four directions, so a set only inspects its immediate neighbours
+// and the far ends of the runs it joins.  The longest sequence and a
+// Zobrist hash of the elements are kept current by every add, undo
+// and redo.
+//
+//  Space Complexity: O(E + H)
+//  E: The number of elements that have been set on the board
+//  H: The number of sets that can be undone
+class RunTracker{
+
+  static final int DIRS = SparseBoard.DIRS;
+  static final int DROW[] = SparseBoard.DROW;
+  static final int DCOL[] = SparseBoard.DCOL;
+
+  long keys[] = new long[16];
+  int codes[] = new int[16];
+  int nSet = 0, nRedo = 0, undoFloor = 0;
+  RowColIndex index = new RowColIndex();
+
+  // Per slot run data. ends[DIRS*slot+d] is the length of the run in
+  // direction d that the element ends; it is only kept current for
+  // the two endpoints of each run.
+  int ends[] = new int[DIRS*16];
+
+  // The longest sequence is the longestLen elements starting at
+  // packed row/col longestStart in direction longestDir, or none if
+  // longestLen is 0.
+  int longestLen = 0, longestDir = 0;
+  long longestStart = 0;
+
+  // Zobrist hash of the elements on the board, the XOR of
+  // Zobrist.key() of each
+  long zobristHash = 0;
+
+  // Undo/redo data, needed only for slots from undoFloor to nRedo.
+  // There are at most maxUndo such slots, so the data for slot lives
+  // in ring buffers at position h = slot % histCap; histCap doubles
+  // as needed up to maxUndo.  Once maxUndo sets can be undone each
+  // add raises undoFloor, dropping the oldest set from the history.
+  //
+  // links[2*(DIRS*h+d)] and links[2*(DIRS*h+d)+1] are the lengths of
+  // the runs behind and ahead of the element that its set joined,
+  // which is what undo needs to split them again.  prevLongest[h]
+  // (encoded len*DIRS+dir) and prevLongestStart[h] are the longest
+  // sequence from before the set.
+  int maxUndo;
+  int histCap = 16;
+  int links[] = new int[2*DIRS*16];
+  int prevLongest[] = new int[16];
+  long prevLongestStart[] = new long[16];
+
+  // Create an empty tracker which can undo at most maxUndo sets.
+  // RingStack.UNLIMITED keeps the whole history. Throws an
+  // IllegalArgumentException if maxUndo is not positive.
+  RunTracker(int maxUndo){
+    if (maxUndo < 1)
+      throw new IllegalArgumentException("Undo depth must be positive: "+maxUndo);
+    this.maxUndo = maxUndo;
+  }
+
+  // Return the slot of the element at row/col or
+  // RowColIndex.NOT_FOUND if none is set there
+  //
+  // Complexity: O(1) (expected)
+  int slotAt(int row, int col){
+    return index.get(row,col);
+  }
+
+  // Store code at the unset position key in the next slot: index it,
+  // join its runs and advance nSet past it. The redo history is left
+  // to the caller. Returns the slot.
+  //
+  // Complexity: O(1) (amortized expected)
+  int add(long key, int code){
+    int slot = nSet;                                        // Next slot is the end of the history
+    if (slot == keys.length)
+      grow(2*slot);
+    if (slot - undoFloor >= maxUndo)                        // Drop the oldest set from the history
+      undoFloor = slot + 1 - maxUndo;
+    if (slot - undoFloor >= histCap)
+      growHistory((int) Math.min(maxUndo, 2L*histCap));
+
+    keys[slot] = key;
+    codes[slot] = code;
+    place(slot);
+    return slot;
+  }
+
+  // Discard the redo history
+  void clearRedo(){
+    nRedo = nSet;
+  }
+
+  // Make the sets so far permanent, as constructors loading elements
+  // do, and discard the redo history
+  void clearUndo(){
+    undoFloor = nSet;
+    nRedo = nSet;
+  }
+
+  // Remove the most recently set element and return its slot.
+  // Throws a RuntimeException with the message "Undo history is
+  // empty" if there is no set to undo.
+  //
+  // Complexity: O(1) (expected)
+  int undo(){
+    if (!canUndo())
+      throw new RuntimeException("Undo history is empty");
+    int slot = nSet - 1;                                    // Undo always removes the latest slot
+    unlinkRuns(slot);
+    index.remove(keys[slot]);
+    zobristHash ^= zobristKey(slot);
+    nSet = slot;
+    return slot;
+  }
+
+  // Put the most recently undone element back and return its slot.
+  // Throws a RuntimeException with the message "Redo history is
+  // empty" if there is no set to redo.
+  //
+  // Complexity: O(1) (expected)
+  int redo(){
+    if (!canRedo())
+      throw new RuntimeException("Redo history is empty");
+    int slot = nSet;
+    place(slot);
+    return slot;
+  }
+
+  boolean canUndo(){
+    return nSet > undoFloor;
+  }
+
+  boolean canRedo(){
+    return nRedo > nSet;
+  }
+
+  // Index the element in slot, join its runs and advance nSet past it
+  private void place(int slot){
+    index.put(keys[slot],slot);
+    linkRuns(slot);
+    zobristHash ^= zobristKey(slot);
+    nSet = slot + 1;
+  }
+
+  // Return true if the element at row/col is part of a run of at
+  // least k equal elements; false for unset cells.  No run can be
+  // longer than the longest sequence, so until some run reaches k the
+  // answer is found without looking at the board.
+  //
+  // Complexity: O(k) (expected), no allocation
+  boolean checkWinAt(int row, int col, int k){
+    if (k > longestLen)
+      return false;
+    int slot = index.get(row,col);
+    if (slot == RowColIndex.NOT_FOUND)
+      return false;
+    int x = codes[slot];
+    for (int d = 0; d < DIRS; d++){
+      int back = countEqual(row, col, -DROW[d], -DCOL[d], x, k-1);
+      if (back + 1 + countEqual(row, col, DROW[d], DCOL[d], x, k-1-back) >= k)
+        return true;
+    }
+    return false;
+  }
+
+  // Number of consecutive elements with code x stepping by dr/dc from
+  // row/col, not counting row/col and stopping at max.
+  private int countEqual(int row, int col, int dr, int dc, int x, int max){
+    int n = 0;
+    while (n < max){
+      row += dr;
+      col += dc;
+      int slot = index.get(row,col);
+      if (slot == RowColIndex.NOT_FOUND || codes[slot] != x)
+        break;
+      n++;
+    }
+    return n;
+  }
+
+  // Return the slot of the i'th element of the longest sequence
+  int longestSlot(int i){
+    return index.get(RowColIndex.keyRow(longestStart) + i*DROW[longestDir],
+                     RowColIndex.keyCol(longestStart) + i*DCOL[longestDir]);
+  }
+
+  // Join the runs on either side of the element in slot in each
+  // direction and update the longest sequence if a longer run has
+  // formed. Ties keep the existing, earlier, longest sequence.
+  //
+  // Complexity: O(1) (expected)
+  private void linkRuns(int slot){
+
+    int row = RowColIndex.keyRow(keys[slot]), col = RowColIndex.keyCol(keys[slot]);
+    int x = codes[slot];
+    int h = slot % histCap;
+
+    prevLongest[h] = longestLen*DIRS + longestDir;
+    prevLongestStart[h] = longestStart;
+
+    for (int d = 0; d < DIRS; d++){
+      int back = runEndingAt(row - DROW[d], col - DCOL[d], x, d);
+      int ahead = runEndingAt(row + DROW[d], col + DCOL[d], x, d);
+      int len = back + ahead + 1;
+
+      int at = DIRS*h + d;
+      links[2*at] = back;
+      links[2*at+1] = ahead;
+      ends[DIRS*slot + d] = len;
+      if (back > 0)                                         // Far end of the run behind
+        ends[DIRS*index.get(row - back*DROW[d], col - back*DCOL[d]) + d] = len;
+      if (ahead > 0)                                        // Far end of the run ahead
+        ends[DIRS*index.get(row + ahead*DROW[d], col + ahead*DCOL[d]) + d] = len;
+
+      if (len > longestLen){
+        longestLen = len;
+        longestDir = d;
+        longestStart = RowColIndex.key(row - back*DROW[d], col - back*DCOL[d]);
+      }
+    }
+  }
+
+  // Undo linkRuns(slot): restore the far ends of the runs the element
+  // joined to their previous lengths and restore the longest
+  // sequence. Only valid for the most recently set element.
+  //
+  // Complexity: O(1) (expected)
+  private void unlinkRuns(int slot){
+
+    int row = RowColIndex.keyRow(keys[slot]), col = RowColIndex.keyCol(keys[slot]);
+    int h = slot % histCap;
+
+    for (int d = 0; d < DIRS; d++){
+      int at = DIRS*h + d;
+      int back = links[2*at], ahead = links[2*at+1];
+      if (back > 0)
+        ends[DIRS*index.get(row - back*DROW[d], col - back*DCOL[d]) + d] = back;
+      if (ahead > 0)
+        ends[DIRS*index.get(row + ahead*DROW[d], col + ahead*DCOL[d]) + d] = ahead;
+    }
+
+    longestLen = prevLongest[h] / DIRS;
+    longestDir = prevLongest[h] % DIRS;
+    longestStart = prevLongestStart[h];
+  }
+
+  // Length of the run in direction d that ends at row/col if the
+  // element there has code x, otherwise 0.
+  private int runEndingAt(int row, int col, int x, int d){
+    int slot = index.get(row,col);
+    if (slot == RowColIndex.NOT_FOUND || codes[slot] != x)
+      return 0;
+    return ends[DIRS*slot + d];
+  }
+
+  // Zobrist key of the element in slot
+  private long zobristKey(int slot){
+    return Zobrist.key(RowColIndex.keyRow(keys[slot]), RowColIndex.keyCol(keys[slot]), codes[slot]);
+  }
+
+  // Resize all per slot arrays to hold n slots
+  private void grow(int n){
+    keys = Arrays.copyOf(keys, n);
+    codes = Arrays.copyOf(codes, n);
+    ends = Arrays.copyOf(ends, DIRS*n);
+  }
+
+  // Resize the history ring buffers to n entries, moving the entries
+  // of the slots from undoFloor to nSet to their new positions; any
+  // redo history is about to be discarded by a set. Boards with ring
+  // buffers of their own resize them the same way when histCap
+  // changes.
+  private void growHistory(int n){
+    int newLinks[] = new int[2*DIRS*n];
+    int newPrev[] = new int[n];
+    long newPrevStart[] = new long[n];
+    for (int slot = undoFloor; slot < nSet; slot++){
+      int h = slot % histCap, g = slot % n;
+      System.arraycopy(links, 2*DIRS*h, newLinks, 2*DIRS*g, 2*DIRS);
+      newPrev[g] = prevLongest[h];
+      newPrevStart[g] = prevLongestStart[h];
+    }
+    links = newLinks;
+    prevLongest = newPrev;
+    prevLongestStart = newPrevStart;
+    histCap = n;
+  }
+
+  // Return the estimated bytes of memory held by the undo/redo
+  // history: the ring buffers above and the slots of sets that have
+  // been undone and may be redone.
+  //
+  // Complexity: O(1) (worst-case)
+  long historyMemory(){
+    long ring = histCap*(4L*2*DIRS + 4 + 8);
+    long slot = 8 + 4 + 4L*DIRS;                            // keys, codes, ends
+    return ring + slot*(nRedo - nSet);
+  }
+}
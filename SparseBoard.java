@@ -1,19 +1,59 @@
 import java.util.*;
 
 // An implementation of an ExpandableBoard intended to favor reduced
-// memory over speed of operations.  Most operations require O(E) time
-// to complete where E is the number of non-fill elements that have
-// been set on the board.  Internally, elements are stored in several
-// lists sorted in different orders to facilitate the calculation of
-// the longest sequence.
+// memory over speed of operations.  Only explicitly set elements are
+// stored.  Elements are interned in a Palette and their codes are
+// held by a RunTracker: each set element occupies a slot numbered in
+// the order in which it was set, and a RowColIndex maps the packed
+// row/col of every element to its slot so that get() and set() take
+// O(1) expected time rather than a scan of all E elements.
+// Comparisons between elements are primitive.  RowColElem objects are
+// created only when results are returned and are then cached per
+// slot so that repeated results share them.
+//
+// Runs of equal elements are maintained by the RunTracker as
+// elements are set: each element records the length of the run it
+// ends in each of the four directions, so a set only inspects its
+// immediate neighbours and the far ends of the runs it joins.
+//
+// The elements are also kept sorted in four RowColSkipLists, one per
+// order reported by the elementsIn*Order() methods, so those methods
+// copy rather than sort and elements along a single line can be
+// found in O(log E + k).  rowColOrder() and its siblings iterate the
+// same orders without copying.
 // 
 //  Space Complexity: O(E)
 //  E: The number of elements that have been set on the board
-public class SparseBoard<T> implements ExpandableBoard<T>{
+public class SparseBoard<T> implements WinCheckBoard<T>{
   
   T fillElem;                                                                        
   int minRow, maxRow, minCol, maxCol;
-  AdditiveList<RowColElem<T>> board = new AdditiveList<RowColElem<T>>();
+  Palette<T> palette = new Palette<T>();
+  
+  // Slots, runs and history of the elements on the board; views[i]
+  // is the RowColElem of slot i.
+  RunTracker runs;
+  RowColElem<T> views[] = newViews(16);  // Lazily created, see view()
+  
+  // Elements in row/col, col/row, diag/row and anti-diag/reverse-row
+  // order.
+  RowColSkipList orders[] = {
+    new RowColSkipList(RowColSkipList.ROW_COL),
+    new RowColSkipList(RowColSkipList.COL_ROW),
+    new RowColSkipList(RowColSkipList.DIAG_ROW),
+    new RowColSkipList(RowColSkipList.ADIAG_REV_ROW),
+  };
+  
+  // Directions of sequences: row (W-E), column (N-S), diagonal
+  // (NW-SE), and anti-diagonal (NE-SW)
+  static final int DIRS = 4;
+  static final int DROW[] = {0, 1, 1,  1};
+  static final int DCOL[] = {1, 0, 1, -1};
+  
+  // orderNodes[DIRS*h+o] is the node of the slot whose history entry
+  // is h = slot % runs.histCap in orders[o]; it is unlinked on undo
+  // and relinked on redo.
+  RowColSkipList.Node orderNodes[] = new RowColSkipList.Node[DIRS*16];
   
   
   /* Workhorse constructor. Since our board only tracks set elements, creating
@@ -22,6 +62,15 @@ public class SparseBoard<T> implements ExpandableBoard<T>{
    * only 5 operations every single time this constructor is run. */
   
   public SparseBoard(int minRow, int maxRow, int minCol, int maxCol, T fillElem){
+    this(minRow,maxRow,minCol,maxCol,fillElem,RingStack.UNLIMITED);
+  }
+  
+  // Workhorse constructor with a bounded history: at most the maxUndo
+  // most recent sets can be undone. RingStack.UNLIMITED keeps the
+  // whole history. Throws an IllegalArgumentException if maxUndo is
+  // not positive.
+  public SparseBoard(int minRow, int maxRow, int minCol, int maxCol, T fillElem, int maxUndo){
+    this.runs = new RunTracker(maxUndo);
     this.minRow = minRow;
     this.maxRow = maxRow;
     this.minCol = minCol;
@@ -43,16 +92,46 @@ public class SparseBoard<T> implements ExpandableBoard<T>{
   // board should not have any undo/redo history but should have a
   // longest sequence calculated from the contents of 2-D array.
   //
-  // There is no target complexity for this method. Use of repeated
-  // set() calls is suggested to simplify it.
+  // Cells are stored in row-major order, which is also the order the
+  // longest sequence tie-break sees them in. The array is then walked
+  // once per sorted order so that each order is built by appending
+  // rather than searching.
+  //
+  // Complexity: O(R*C) (expected)
+  //   R: number of rows in x
+  //   C: length of the longest row of x
   public SparseBoard(T[][] x, T fillElem){
     
     this(0,x.length - 1, 0, x[0].length - 1, fillElem);     // Call workhorse constructor to create proper sized board
     
+    int cols = 0;
     for (int i = 0; i < x.length; i++){
-      for (int n = 0; n < x[i].length; n++){                // Loop through 2d board and call set method for each
-        this.set(i,n,x[i][n]);                              // cell, set method will handle keeping track of the
-      }                                                     // longest sequence as well as identifying fill element.
+      for (int n = 0; n < x[i].length; n++){                // Loop through 2d board and store each cell, which
+        store(i,n,x[i][n]);                                 // keeps track of the longest sequence and skips
+        runs.clearUndo();                                   // fill elements. Loaded elements cannot be undone.
+      }
+      cols = Math.max(cols, x[i].length);
+    }
+    for (int o = 0; o < DIRS; o++)
+      appendInOrder(o, x.length, cols);
+  }
+  
+  // Bulk constructor, creates a board with given fill element holding
+  // the given elements. The extent starts as the single cell 0,0 and
+  // grows to include every element. Elements equal to the fill
+  // element are skipped and a repeated position raises the same
+  // exception as set(). The board has no undo/redo history; ties for
+  // the longest sequence favor elements earlier in iteration order.
+  //
+  // Complexity: O(E log E) (expected), to sort the elements into the
+  // four orders
+  public SparseBoard(Iterable<RowColElem<T>> elems, T fillElem){
+    this(0,0,0,0,fillElem);
+    for (RowColElem<T> rce : elems){
+      int slot = store(rce.getRow(),rce.getCol(),rce.getElem());
+      if (slot != -1)
+        insertInOrders(slot);
+      runs.clearUndo();
     }
   }
 
@@ -102,10 +181,14 @@ public class SparseBoard<T> implements ExpandableBoard<T>{
   // a board that is filled with only the fill element is the empty
   // list [].
   //
-  // Target Complexity: O(L) (worst case)
+  // Complexity: O(L) (expected)
   // L: length of the longest sequence
   public List< RowColElem<T> > getLongestSequence(){
-    return null;
+    
+    List<RowColElem<T>> seq = new ArrayList<RowColElem<T>>();
+    for (int i = 0; i < runs.longestLen; i++)               // Walk from the start of the run
+      seq.add(view(runs.longestSlot(i)));
+    return seq;
   }
   
   // Retrieve an element at virtual row/col specified. Any row/col may
@@ -113,25 +196,30 @@ public class SparseBoard<T> implements ExpandableBoard<T>{
   // by min/max row/col, the fill element is returned.  If the element
   // has not been explicitly set, the fill element is returned.
   // 
-  // Complexity: O(E)
-  //  E: The number of elements that have been set on the board
+  // Complexity: O(1) (expected)
   public T get(int row, int col){
     
     if (row < minRow || row > maxRow || col < minCol || col > maxCol)
       return fillElem;
     
-    ListIterator<RowColElem<T>> iter = board.listIterator();
-
-    while(iter.hasNext()){
-      RowColElem<T> piece = iter.next();
-      if (piece.getRow() == row && piece.getCol() == col)
-        return piece.getElem();
-    }
+    int slot = runs.slotAt(row,col);
+    if (slot == RowColIndex.NOT_FOUND)
+      return fillElem;
     
-    return fillElem; 
+    return palette.elem(runs.codes[slot]);
     
   }
   
+  // Return true if the element at row/col is part of a run of at
+  // least k equal elements; false for unset cells.  No run can be
+  // longer than the longest sequence, so until some run reaches k the
+  // answer is found without looking at the board.
+  //
+  // Complexity: O(k) (expected), no allocation
+  public boolean checkWinAt(int row, int col, int k){
+    return runs.checkWinAt(row,col,k);
+  }
+  
   // Update internals to reflect an increase in the board extents by
   // one row on the bottom.  This method should not change the memory
   // footprint of the SparseBoard.
@@ -184,11 +272,141 @@ public class SparseBoard<T> implements ExpandableBoard<T>{
   // to do so will generate a RuntimeException with the message
   // "Cannot set elements to null"
   //
-  // Target Complexity: O(E)
-  //  E: The number of elements that have been set on the board
+  // Complexity: O(log E) (amortized expected), to insert into the
+  // sorted orders
   public void set(int row, int col, T x){
+    int slot = store(row,col,x);
+    if (slot == -1)
+      return;
+    insertInOrders(slot);
+    runs.clearRedo();                                       // Discard any redo history
+  }
+  
+  // Check and store x at row/col in the next slot with the rules of
+  // set(): index it, join its runs and advance nSet past it, but
+  // leave the sorted orders and redo history to the caller. Returns
+  // the slot or -1 if x is the fill element and was not stored.
+  //
+  // Complexity: O(1) (amortized expected)
+  private int store(int row, int col, T x){
+    
+    if (x == null)
+      throw new RuntimeException("Cannot set elements to null");
+    
+    long key = RowColIndex.key(row,col);
+    int prev = runs.index.get(key);
+    if (prev != RowColIndex.NOT_FOUND)
+      throw new RuntimeException(String.format("Element %d %d already set to %s",
+                                               row,col,palette.elem(runs.codes[prev])));
+    
+    if (x.equals(fillElem))                                 // Fill elements are never stored
+      return -1;
+    
+    expandToInclude(row,col);
+    
+    int cap = runs.histCap;
+    int slot = runs.add(key,palette.intern(x));
+    if (runs.histCap != cap)
+      growOrderNodes(cap);
+    if (slot == views.length)
+      views = Arrays.copyOf(views, runs.keys.length);
+    views[slot] = null;                                     // Slot may have held an abandoned redo
+    return slot;
+  }
+  
+  // Add a newly stored slot to each of the sorted orders
+  //
+  // Complexity: O(log E) (expected)
+  private void insertInOrders(int slot){
+    int h = slot % runs.histCap;
+    for (int o = 0; o < DIRS; o++)
+      orderNodes[DIRS*h + o] = orders[o].insert(runs.keys[slot],slot);
+  }
+  
+  // Build sorted order o from the elements stored within rows 0 to
+  // rows-1 and columns 0 to cols-1 by visiting those cells in order
+  // and appending each one that holds an element. The order must be
+  // empty.
+  //
+  // Complexity: O(rows*cols) (expected)
+  private void appendInOrder(int o, int rows, int cols){
+    RowColSkipList.Node tails[] = orders[o].tails();
+    switch (o){
+      case RowColSkipList.ROW_COL:
+        for (int r = 0; r < rows; r++)
+          for (int c = 0; c < cols; c++)
+            appendAt(o,tails,r,c);
+        break;
+      case RowColSkipList.COL_ROW:
+        for (int c = 0; c < cols; c++)
+          for (int r = 0; r < rows; r++)
+            appendAt(o,tails,r,c);
+        break;
+      case RowColSkipList.DIAG_ROW:                         // col-row ascending, then row
+        for (int d = 1 - rows; d < cols; d++)
+          for (int r = Math.max(0,-d); r < rows && r + d < cols; r++)
+            appendAt(o,tails,r,r + d);
+        break;
+      default:                                              // row+col ascending, then row descending
+        for (int a = 0; a < rows + cols - 1; a++)
+          for (int r = Math.min(rows - 1,a); r >= 0 && a - r < cols; r--)
+            appendAt(o,tails,r,a - r);
+        break;
+    }
+  }
   
+  // Append the element at row/col, if any, to sorted order o. The
+  // constructors that build orders this way leave no history so the
+  // node need not be kept.
+  private void appendAt(int o, RowColSkipList.Node tails[], int row, int col){
+    int slot = runs.slotAt(row,col);
+    if (slot != RowColIndex.NOT_FOUND)
+      orders[o].append(tails,runs.keys[slot],slot);
+  }
   
+  // Return the RowColElem for the element in slot, creating it on
+  // first use. RowColElem is immutable so the same instance may be
+  // shared by any number of returned lists.
+  RowColElem<T> view(int slot){
+    RowColElem<T> v = views[slot];
+    if (v == null){
+      v = new RowColElem<T>(RowColIndex.keyRow(runs.keys[slot]),
+                            RowColIndex.keyCol(runs.keys[slot]),
+                            palette.elem(runs.codes[slot]));
+      views[slot] = v;
+    }
+    return v;
+  }
+  
+  // Allocate an array of views; generic arrays cannot be created directly
+  @SuppressWarnings({"unchecked","rawtypes"})
+  private static <T> RowColElem<T>[] newViews(int n){
+    return (RowColElem<T>[]) new RowColElem[n];
+  }
+  
+  // Resize orderNodes to match the tracker's history ring buffers,
+  // which have just grown from oldCap entries, moving the entries of
+  // the slots from undoFloor to the new slot as the tracker did.
+  private void growOrderNodes(int oldCap){
+    int n = runs.histCap;
+    RowColSkipList.Node newNodes[] = new RowColSkipList.Node[DIRS*n];
+    for (int slot = runs.undoFloor; slot < runs.nSet - 1; slot++)
+      System.arraycopy(orderNodes, DIRS*(slot % oldCap), newNodes, DIRS*(slot % n), DIRS);
+    orderNodes = newNodes;
+  }
+  
+  // Return the maximum number of sets that can be undone
+  public int getMaxUndo(){
+    return runs.maxUndo;
+  }
+  
+  // Return the estimated bytes of memory held by the undo/redo
+  // history: the tracker's and orderNodes, assuming 8 byte references,
+  // and the views of sets that have been undone and may be redone.
+  //
+  // Complexity: O(1) (worst-case)
+  public long historyMemory(){
+    return runs.historyMemory() + 8L*DIRS*runs.histCap + 8L*(runs.nRedo - runs.nSet);
   }
   
   // Produce copies of the internal lists of the explicitly set
@@ -198,24 +416,134 @@ public class SparseBoard<T> implements ExpandableBoard<T>{
   // lists should be copies so that subsequenent modification to the
   // lists does not affect the board.
   //
-  // Target Complexity: O(E) (worst-case)
+  // Complexity: O(E) (worst-case)
   public List<RowColElem<T>> elementsInRowColOrder(){
+    return elementsInOrder(RowColSkipList.ROW_COL);
+  }
   
-    ListIterator<RowColElem<T>> iter = board.listIterator();
-    
-    while (iter.hasNext()){
-      RowColElem<T> piece = iter.next();
-      
-      
-    return null;
+  public List<RowColElem<T>> elementsInColRowOrder(){
+    return elementsInOrder(RowColSkipList.COL_ROW);
+  }
+  
+  public List<RowColElem<T>> elementsInDiagRowOrder(){
+    return elementsInOrder(RowColSkipList.DIAG_ROW);
+  }
   
+  public List<RowColElem<T>> elementsInADiagReverseRowOrder(){
+    return elementsInOrder(RowColSkipList.ADIAG_REV_ROW);
   }
   
-  public List<RowColElem<T>> elementsInColRowOrder(){return null;}
+  // Copy the elements of one of the sorted orders
+  private List<RowColElem<T>> elementsInOrder(int order){
+    List<RowColElem<T>> list = new ArrayList<RowColElem<T>>(orders[order].size());
+    for (RowColSkipList.Node n = orders[order].first(); n != null; n = n.next())
+      list.add(view(n.slot));
+    return list;
+  }
+  
+  // Produce copies of the explicitly set elements along a single
+  // line: a row sorted by column, a column sorted by row, a diagonal
+  // (all elements with col-row equal to diag) sorted by row, or an
+  // anti-diagonal (all elements with row+col equal to adiag) sorted
+  // by descending row.
+  //
+  // Complexity: O(log E + k) (expected)
+  //  k: The number of elements on the line
+  public List<RowColElem<T>> elementsInRow(int row){
+    return elementsOnLine(RowColSkipList.ROW_COL, row);
+  }
+  
+  public List<RowColElem<T>> elementsInCol(int col){
+    return elementsOnLine(RowColSkipList.COL_ROW, col);
+  }
+  
+  public List<RowColElem<T>> elementsInDiag(long diag){
+    return elementsOnLine(RowColSkipList.DIAG_ROW, diag);
+  }
+  
+  public List<RowColElem<T>> elementsInADiag(long adiag){
+    return elementsOnLine(RowColSkipList.ADIAG_REV_ROW, adiag);
+  }
   
-  public List<RowColElem<T>> elementsInDiagRowOrder(){return null;}
+  // Copy the elements on one line of one of the sorted orders
+  private List<RowColElem<T>> elementsOnLine(int order, long line){
+    List<RowColElem<T>> list = new ArrayList<RowColElem<T>>();
+    RowColSkipList.Node n = orders[order].firstOnLine(line);
+    for (; n != null && RowColSkipList.line(order,n.key) == line; n = n.next())
+      list.add(view(n.slot));
+    return list;
+  }
+  
+  // Read-only views of the same orders as elementsIn*Order() that
+  // walk the board's sorted orders directly instead of copying them.
+  // Iterating allocates no lists and reuses the cached RowColElem of
+  // each slot. Any set, undo or redo after an iterator is created
+  // makes it throw a ConcurrentModificationException, as
+  // AdditiveList's iterator does; remove() is unsupported.
+  //
+  // Complexity: O(1) to create, O(1) (worst-case) per element
+  public Iterable<RowColElem<T>> rowColOrder(){
+    return new OrderView(RowColSkipList.ROW_COL);
+  }
+  
+  public Iterable<RowColElem<T>> colRowOrder(){
+    return new OrderView(RowColSkipList.COL_ROW);
+  }
+  
+  public Iterable<RowColElem<T>> diagRowOrder(){
+    return new OrderView(RowColSkipList.DIAG_ROW);
+  }
+  
+  public Iterable<RowColElem<T>> aDiagReverseRowOrder(){
+    return new OrderView(RowColSkipList.ADIAG_REV_ROW);
+  }
+  
+  // Iterable over one of the sorted orders. Its spliterator reports
+  // the exact size and is ORDERED, DISTINCT and NONNULL.
+  class OrderView implements Iterable<RowColElem<T>>{
+    final RowColSkipList list;
+    
+    OrderView(int order){
+      this.list = orders[order];
+    }
+    
+    public Iterator<RowColElem<T>> iterator(){
+      return new OrderIterator(list);
+    }
+    
+    public Spliterator<RowColElem<T>> spliterator(){
+      return Spliterators.spliterator(iterator(), list.size(),
+                                      Spliterator.ORDERED | Spliterator.DISTINCT |
+                                      Spliterator.NONNULL);
+    }
+  }
   
-  public List<RowColElem<T>> elementsInADiagReverseRowOrder(){return null;}
+  // Fail-fast iterator over one of the sorted orders
+  class OrderIterator implements Iterator<RowColElem<T>>{
+    final RowColSkipList list;
+    RowColSkipList.Node current;                   // Node returned by next()
+    final int expectedModCount;                    // List modifications iterator expects
+    
+    OrderIterator(RowColSkipList list){
+      this.list = list;
+      this.current = list.first();
+      this.expectedModCount = list.modCount;
+    }
+    
+    public boolean hasNext(){
+      if (expectedModCount != list.modCount)
+        throw new ConcurrentModificationException();
+      return current != null;
+    }
+    
+    public RowColElem<T> next(){
+      if (!hasNext())
+        throw new NoSuchElementException();
+      RowColElem<T> rce = view(current.slot);
+      current = current.next();
+      return rce;
+    }
+  }
   
   // Undo an explicit set(row,col,x) operation by changing an element
   // to its previous state.  Repeated calls to undoSet() can be made
@@ -227,8 +555,14 @@ public class SparseBoard<T> implements ExpandableBoard<T>{
   // method throws a runtime exception with the message
   // "Undo history is empty"
   //
-  // Target Complexity: O(1) (worst case)
-  public void undoSet(){}
+  // Complexity: O(1) (expected)
+  public void undoSet(){
+    
+    int slot = runs.undo();                                 // Undo always removes the latest slot
+    int h = slot % runs.histCap;
+    for (int o = 0; o < DIRS; o++)
+      orders[o].unlink(orderNodes[DIRS*h + o]);
+  }
   
   // Redo a set that was undone via undoSet().  Every call to
   // undoSet() moves backward in the history of the board state and
@@ -239,8 +573,36 @@ public class SparseBoard<T> implements ExpandableBoard<T>{
   // or undoSet() has not been called, this method generates a
   // RuntimeException with the message "Redo history is empty".
   //
-  // Target Complexity: O(1)
-  public void redoSet(){}
+  // Complexity: O(1) (expected)
+  public void redoSet(){
+    
+    int slot = runs.redo();                                 // Relink it into the orders where it was
+    int h = slot % runs.histCap;
+    for (int o = 0; o < DIRS; o++)
+      orders[o].relink(orderNodes[DIRS*h + o]);
+  }
+  
+  // Return a 64-bit hash of the elements on the board, kept current
+  // by set(), undoSet() and redoSet(). Equal positions on this board
+  // always have equal hashes. Element codes come from the board's
+  // Palette, so two boards agree on hashes when their elements were
+  // first set in the same order, as when players alternate from the
+  // same first player; the fill element and extent are not hashed.
+  //
+  // Complexity: O(1) (worst-case)
+  public long getZobristHash(){
+    return runs.zobristHash;
+  }
+  
+  // Return true if any sets can be undone and false otherwise.
+  public boolean canUndo(){
+    return runs.canUndo();
+  }
+  
+  // Return true if any undone sets can be redone and false otherwise.
+  public boolean canRedo(){
+    return runs.canRedo();
+  }
   
   // toString() - create a pretty representation of board.
   //
@@ -276,9 +638,36 @@ public class SparseBoard<T> implements ExpandableBoard<T>{
   // Constraint: No array or arraylist allocation is allowed in this
   // method.
   // 
-  // Note: to adhere to target runtime complexity employ a
-  // StringBuilder and an iterator over an internal list of the boards
-  // set elements.
-  public String toString(){return null;}
+  // Note: each cell is looked up through the index, which is O(1)
+  // expected, so a StringBuilder and a row-major walk of the extent
+  // meet the target without sorting the set elements.
+  public String toString(){
+    
+    StringBuilder sb = new StringBuilder();
+    
+    sb.append("    |");                                     // Column labels
+    for (int c = minCol; c <= maxCol; c++)
+      sb.append(String.format("%3d|",c));
+    sb.append("\n");
+    appendDivider(sb);
+    
+    for (int r = minRow; r <= maxRow; r++){
+      sb.append(String.format("%3d |",r));
+      for (int c = minCol; c <= maxCol; c++)
+        sb.append(String.format("%3s|",get(r,c)));
+      sb.append("\n");
+      appendDivider(sb);
+    }
+    
+    return sb.toString();
+  }
+  
+  // Append a +---+---+ divider line spanning the columns of the board
+  private void appendDivider(StringBuilder sb){
+    sb.append("    +");
+    for (int c = minCol; c <= maxCol; c++)
+      sb.append("---+");
+    sb.append("\n");
+  }
   
 }
\ No newline at end of file
@@ -0,0 +1,454 @@
+import java.util.*;
+
+// An implementation of an ExpandableBoard intended for boards which
+// are locally dense.  Cells are stored in fixed size square tiles of
+// TILE x TILE elements which are allocated only when an element is
+// first set inside them.  Tiles are located through a RowColIndex
+// keyed by tile coordinates, so the board can grow in any direction,
+// including negative coordinates, without ever copying existing
+// cells.  Within a tile, lookup is a plain array access.  Cells hold
+// Palette codes rather than element references.
+//
+// Runs of equal elements are tracked exactly as in SparseBoard: each
+// cell records the length of the run it ends in each direction and
+// only run endpoints are kept current.  Each set also records the
+// tiles of its cell and of the far ends of the runs it joins, so undo
+// and redo touch only those tiles and never search the tile index.
+//
+//  Space Complexity: O(T*TILE^2 + E)
+//  T: The number of tiles containing at least one set element
+//  E: The number of elements that have been set on the board
+public class TiledBoard<T> implements WinCheckBoard<T>{
+
+  // Width and height of a tile; must be a power of 2
+  static final int SHIFT = 4;
+  static final int TILE = 1 << SHIFT;
+  static final int MASK = TILE - 1;
+
+  // Directions of sequences, same as SparseBoard
+  static final int DIRS = 4;
+  static final int DROW[] = {0, 1, 1,  1};
+  static final int DCOL[] = {1, 0, 1, -1};
+
+  // A tile of cells. Each cell holds 1 + the palette code of its
+  // element, or EMPTY if it has not been set. ends holds the run
+  // length per direction for cells which end a run.
+  static final int EMPTY = 0;
+  static class Tile{
+    int cells[] = new int[TILE*TILE];
+    int ends[] = new int[DIRS*TILE*TILE];
+  }
+
+  T fillElem;
+  int minRow, maxRow, minCol, maxCol;
+  Palette<T> palette = new Palette<T>();
+
+  ArrayList<Tile> tiles = new ArrayList<Tile>();
+  RowColIndex tileIndex = new RowColIndex();
+  long lastTileKey;            // Single entry cache of the last tile found
+  Tile lastTile = null;
+
+  // History of sets. moves[i] is the packed row/col of the i'th set
+  // and moveCells[i] its cell contents; entries below nMoves are on the board,
+  // those from nMoves up to nRedo may be redone. Moves below
+  // undoFloor were loaded by a constructor and cannot be undone.
+  // links and prevLongest play the same roles as in SparseBoard.
+  // moveTiles[i] is the tile holding the cell of the i'th set and
+  // endTiles[j] the tile of the far end of the run recorded in
+  // links[j], null where that run is empty.
+  long moves[] = new long[16];
+  int moveCells[] = new int[16];
+  int links[] = new int[2*DIRS*16];
+  Tile moveTiles[] = new Tile[16];
+  Tile endTiles[] = new Tile[2*DIRS*16];
+  int prevLongest[] = new int[16];
+  int nMoves = 0, nRedo = 0, undoFloor = 0;
+
+  int longestMove = -1, longestDir = 0;
+
+  // Zobrist hash of the elements on the board, each keyed with its
+  // palette code
+  long zobristHash = 0;
+
+  // Workhorse constructor, create an empty board with the given
+  // extent and fill element. No tiles are allocated.
+  //
+  // Complexity: O(1)
+  public TiledBoard(int minRow, int maxRow, int minCol, int maxCol, T fillElem){
+    this.minRow = minRow;
+    this.maxRow = maxRow;
+    this.minCol = minCol;
+    this.maxCol = maxCol;
+    setFillElem(fillElem);
+  }
+
+  // Convenience 1-arg constructor, creates a single cell board with
+  // given fill element at 0,0.
+  public TiledBoard(T fillElem){
+    this(0,0,0,0,fillElem);
+  }
+
+  // Convenience 2-arg constructor, creates a board with given fill
+  // element and copies elements from T 2-D array with 0,0 at the
+  // upper left. The board has no undo/redo history but has the
+  // longest sequence of the 2-D array.
+  public TiledBoard(T[][] x, T fillElem){
+    this(0,x.length - 1, 0, x[0].length - 1, fillElem);
+    for (int i = 0; i < x.length; i++){
+      for (int n = 0; n < x[i].length; n++){
+        this.set(i,n,x[i][n]);
+      }
+    }
+    undoFloor = nMoves;
+  }
+
+  public int getMinRow(){
+    return this.minRow;
+  }
+
+  public int getMaxRow(){
+    return this.maxRow;
+  }
+
+  public int getMinCol(){
+    return this.minCol;
+  }
+
+  public int getMaxCol(){
+    return this.maxCol;
+  }
+
+  public T getFillElem(){
+    return this.fillElem;
+  }
+
+  // Change the fill element; only the field changes.
+  //
+  // Complexity: O(1) (worst-case)
+  public void setFillElem(T f){
+    if (f == null)
+      throw new RuntimeException("Cannot set elements to null");
+    this.fillElem = f;
+  }
+
+  // Grow the extent to include row/col. No tiles are allocated until
+  // an element is set so this never allocates or copies. Always
+  // returns 0.
+  //
+  // Complexity: O(1) (worst-case)
+  public int expandToInclude(int row, int col){
+    if (row < minRow)
+      minRow = row;
+    else if (row > maxRow)
+      maxRow = row;
+
+    if (col < minCol)
+      minCol = col;
+    else if (col > maxCol)
+      maxCol = col;
+
+    return 0;
+  }
+
+  // Retrieve the element at row/col or the fill element if it is
+  // beyond the extent or has not been set.
+  //
+  // Complexity: O(1) (expected)
+  public T get(int row, int col){
+    if (row < minRow || row > maxRow || col < minCol || col > maxCol)
+      return fillElem;
+    int x = cell(row,col);
+    return (x == EMPTY) ? fillElem : palette.elem(x - 1);
+  }
+
+  // Set element at row/col to x with the same rules as
+  // ExpandableBoard.set(): null is rejected, set elements cannot be
+  // changed, and setting the fill element has no effect.  The set
+  // joins neighbouring runs and may replace the longest sequence.
+  //
+  // Complexity: O(1) (amortized expected)
+  public void set(int row, int col, T x){
+    if (x == null)
+      throw new RuntimeException("Cannot set elements to null");
+
+    int prev = cell(row,col);
+    if (prev != EMPTY)
+      throw new RuntimeException(String.format("Element %d %d already set to %s",
+                                               row,col,palette.elem(prev - 1)));
+
+    if (x.equals(fillElem))
+      return;
+
+    expandToInclude(row,col);
+
+    int move = nMoves;
+    if (move == moves.length){
+      moves = Arrays.copyOf(moves, 2*move);
+      moveCells = Arrays.copyOf(moveCells, 2*move);
+      links = Arrays.copyOf(links, 2*DIRS*2*move);
+      moveTiles = Arrays.copyOf(moveTiles, 2*move);
+      endTiles = Arrays.copyOf(endTiles, 2*DIRS*2*move);
+      prevLongest = Arrays.copyOf(prevLongest, 2*move);
+    }
+    moves[move] = RowColIndex.key(row,col);
+    moveCells[move] = palette.intern(x) + 1;
+    findRuns(move);
+    place(move);
+    nRedo = nMoves;                                         // Discard any redo history
+  }
+
+  // Undo the most recent set.  The extent of the board is unchanged.
+  //
+  // Complexity: O(1) (worst-case)
+  public void undoSet(){
+    if (nMoves == undoFloor)
+      throw new RuntimeException("Undo history is empty");
+
+    int move = nMoves - 1;
+    long key = moves[move];
+    int row = RowColIndex.keyRow(key), col = RowColIndex.keyCol(key);
+    Tile t = moveTiles[move];
+    int at = ((row & MASK) << SHIFT) | (col & MASK);
+
+    for (int d = 0; d < DIRS; d++){
+      int i = 2*(DIRS*move + d);
+      int back = links[i], ahead = links[i+1];
+      if (back > 0)
+        setEnd(endTiles[i], row - back*DROW[d], col - back*DCOL[d], d, back);
+      if (ahead > 0)
+        setEnd(endTiles[i+1], row + ahead*DROW[d], col + ahead*DCOL[d], d, ahead);
+    }
+    int prev = prevLongest[move];
+    longestMove = (prev == -1) ? -1 : prev / DIRS;
+    longestDir = (prev == -1) ? 0 : prev % DIRS;
+
+    t.cells[at] = EMPTY;
+    zobristHash ^= Zobrist.key(row,col,moveCells[move] - 1);
+    nMoves--;
+  }
+
+  // Redo a set undone by undoSet().  The board around the cell is as
+  // it was when the set was first made, so the runs and tiles
+  // recorded then still apply.
+  //
+  // Complexity: O(1) (worst-case)
+  public void redoSet(){
+    if (nMoves == nRedo)
+      throw new RuntimeException("Redo history is empty");
+
+    place(nMoves);
+  }
+
+  // Record the tile of the given move's cell, allocating it if needed,
+  // and the lengths and far end tiles of the runs the move joins.
+  // The board itself is unchanged.
+  //
+  // Complexity: O(1) (amortized expected)
+  private void findRuns(int move){
+    long key = moves[move];
+    int x = moveCells[move];
+    int row = RowColIndex.keyRow(key), col = RowColIndex.keyCol(key);
+    moveTiles[move] = tileFor(row,col,true);
+
+    for (int d = 0; d < DIRS; d++){
+      int i = 2*(DIRS*move + d);
+      int back = runEndingAt(row - DROW[d], col - DCOL[d], x, d);
+      int ahead = runEndingAt(row + DROW[d], col + DCOL[d], x, d);
+      links[i] = back;
+      links[i+1] = ahead;
+      endTiles[i] = (back > 0) ? tileFor(row - back*DROW[d], col - back*DCOL[d], false) : null;
+      endTiles[i+1] = (ahead > 0) ? tileFor(row + ahead*DROW[d], col + ahead*DCOL[d], false) : null;
+    }
+  }
+
+  // Put the element of the given move on the board, join the runs
+  // recorded by findRuns(), and advance nMoves.
+  //
+  // Complexity: O(1) (worst-case)
+  private void place(int move){
+    long key = moves[move];
+    int row = RowColIndex.keyRow(key), col = RowColIndex.keyCol(key);
+    Tile t = moveTiles[move];
+    int at = ((row & MASK) << SHIFT) | (col & MASK);
+    t.cells[at] = moveCells[move];
+
+    prevLongest[move] = (longestMove == -1) ? -1 : longestMove*DIRS + longestDir;
+    int bestLen = longestLength();
+
+    for (int d = 0; d < DIRS; d++){
+      int i = 2*(DIRS*move + d);
+      int back = links[i], ahead = links[i+1];
+      int len = back + ahead + 1;
+      t.ends[DIRS*at + d] = len;
+      if (back > 0)
+        setEnd(endTiles[i], row - back*DROW[d], col - back*DCOL[d], d, len);
+      if (ahead > 0)
+        setEnd(endTiles[i+1], row + ahead*DROW[d], col + ahead*DCOL[d], d, len);
+      if (len > bestLen){
+        bestLen = len;
+        longestMove = move;
+        longestDir = d;
+      }
+    }
+    zobristHash ^= Zobrist.key(row,col,moveCells[move] - 1);
+    nMoves = move + 1;
+  }
+
+  // Return true if the element at row/col is part of a run of at
+  // least k equal elements; false for unset cells.  Answers false at
+  // once while the longest sequence is shorter than k.
+  //
+  // Complexity: O(k) (expected), no allocation
+  public boolean checkWinAt(int row, int col, int k){
+    if (k > longestLength())
+      return false;
+    int x = cell(row,col);
+    if (x == EMPTY)
+      return false;
+    for (int d = 0; d < DIRS; d++){
+      int back = countEqual(row, col, -DROW[d], -DCOL[d], x, k-1);
+      if (back + 1 + countEqual(row, col, DROW[d], DCOL[d], x, k-1-back) >= k)
+        return true;
+    }
+    return false;
+  }
+
+  // Return a 64-bit hash of the elements on the board, kept current
+  // by set(), undoSet() and redoSet(). As in SparseBoard, elements
+  // are hashed by palette code, so boards agree on hashes when their
+  // elements were first set in the same order.
+  //
+  // Complexity: O(1) (worst-case)
+  public long getZobristHash(){
+    return zobristHash;
+  }
+
+  // Number of consecutive cells holding x stepping by dr/dc from
+  // row/col, not counting row/col and stopping at max.
+  private int countEqual(int row, int col, int dr, int dc, int x, int max){
+    int n = 0;
+    while (n < max){
+      row += dr;
+      col += dc;
+      if (cell(row,col) != x)
+        break;
+      n++;
+    }
+    return n;
+  }
+
+  // Length of the run in direction d ending at row/col if that cell
+  // holds x, otherwise 0
+  private int runEndingAt(int row, int col, int x, int d){
+    Tile t = tileFor(row,col,false);
+    if (t == null)
+      return 0;
+    int at = ((row & MASK) << SHIFT) | (col & MASK);
+    if (t.cells[at] != x)
+      return 0;
+    return t.ends[DIRS*at + d];
+  }
+
+  // Record the run length of an endpoint cell, which must be set and
+  // lie in tile t
+  private void setEnd(Tile t, int row, int col, int d, int len){
+    t.ends[DIRS*(((row & MASK) << SHIFT) | (col & MASK)) + d] = len;
+  }
+
+  // Length of the current longest sequence, 0 if there is none
+  private int longestLength(){
+    if (longestMove == -1)
+      return 0;
+    int at = 2*(DIRS*longestMove + longestDir);
+    return links[at] + links[at+1] + 1;
+  }
+
+  // Return the contents of a cell, EMPTY if it has not been set
+  private int cell(int row, int col){
+    Tile t = tileFor(row,col,false);
+    return (t == null) ? EMPTY : t.cells[((row & MASK) << SHIFT) | (col & MASK)];
+  }
+
+  // Locate the tile containing row/col. If create is true a missing
+  // tile is allocated, otherwise null is returned for it.
+  private Tile tileFor(int row, int col, boolean create){
+    long key = RowColIndex.key(row >> SHIFT, col >> SHIFT);
+    if (lastTile != null && key == lastTileKey)
+      return lastTile;
+    int slot = tileIndex.get(key);
+    Tile t;
+    if (slot != RowColIndex.NOT_FOUND){
+      t = tiles.get(slot);
+    }
+    else if (create){
+      t = new Tile();
+      tileIndex.put(key, tiles.size());
+      tiles.add(t);
+    }
+    else{
+      return null;
+    }
+    lastTileKey = key;
+    lastTile = t;
+    return t;
+  }
+
+  // Retrieve the longest sequence present on the board as an
+  // independent list; ties favor the earliest to appear.
+  //
+  // Complexity: O(L) (expected)
+  //  L: length of the longest sequence
+  public List< RowColElem<T> > getLongestSequence(){
+    List<RowColElem<T>> seq = new ArrayList<RowColElem<T>>();
+    if (longestMove == -1)
+      return seq;
+
+    int d = longestDir;
+    int at = 2*(DIRS*longestMove + d);
+    int back = links[at], len = links[at] + links[at+1] + 1;
+    long key = moves[longestMove];
+    T x = palette.elem(moveCells[longestMove] - 1);         // All elements of a run are equal
+    int row = RowColIndex.keyRow(key) - back*DROW[d];
+    int col = RowColIndex.keyCol(key) - back*DCOL[d];
+    for (int i = 0; i < len; i++){
+      seq.add(new RowColElem<T>(row,col,x));
+      row += DROW[d];
+      col += DCOL[d];
+    }
+    return seq;
+  }
+
+  // toString() - create a pretty representation of board in the same
+  // format as SparseBoard.
+  //
+  // Complexity: O(R*C)
+  //   R: number of rows
+  //   C: number of columns
+  public String toString(){
+    StringBuilder sb = new StringBuilder();
+
+    sb.append("    |");
+    for (int c = minCol; c <= maxCol; c++)
+      sb.append(String.format("%3d|",c));
+    sb.append("\n");
+    appendDivider(sb);
+
+    for (int r = minRow; r <= maxRow; r++){
+      sb.append(String.format("%3d |",r));
+      for (int c = minCol; c <= maxCol; c++)
+        sb.append(String.format("%3s|",get(r,c)));
+      sb.append("\n");
+      appendDivider(sb);
+    }
+
+    return sb.toString();
+  }
+
+  // Append a +---+---+ divider line spanning the columns of the board
+  private void appendDivider(StringBuilder sb){
+    sb.append("    +");
+    for (int c = minCol; c <= maxCol; c++)
+      sb.append("---+");
+    sb.append("\n");
+  }
+}
@@ -0,0 +1,221 @@
+import java.util.concurrent.atomic.LongAdder;
+
+// A transposition table for game tree searches: a fixed size hash
+// table from 64-bit position hashes to what a search learned about
+// the position.  Any number of threads may probe and store at once
+// without locking.
+//
+// Entries are two longs in one long[]: the data word, packing the
+// depth, bound, score and best move, and the check word, which is the
+// position's hash XORed with the data word.  A probe reads both words
+// and accepts the entry only if XORing them gives back the hash it is
+// looking for.  Threads writing the same entry at once can leave the
+// words of different stores, or a long half written, but such a mix
+// fails the check and reads as a miss rather than as wrong data.
+//
+// Entries are grouped in buckets of two chosen by the low bits of the
+// hash.  The first entry of a bucket is depth-preferred: it is only
+// replaced by a store of the same position or one searched at least
+// as deep.  Stores that lose go to the second entry, which is always
+// replaced, so recent shallow results are still kept.
+//
+// Data word layout, low bits first: bound+1 (2 bits), depth (8 bits),
+// score (22 bits, signed), column and row of the move (16 bits each,
+// signed; row NO_ROW when there is none).  The bound is offset so
+// that no data word is 0, which marks an empty entry.
+//
+//  Space Complexity: O(M)
+//  M: The size of the table in megabytes
+public class TranspositionTable{
+
+  // Bounds on a stored score
+  public static final int EXACT = 0;   // The score is the position's value
+  public static final int LOWER = 1;   // The value is at least the score
+  public static final int UPPER = 2;   // The value is at most the score
+
+  public static final long MISS = 0;   // Returned by probe() when there is no entry
+
+  public static final int MAX_DEPTH = 255;
+  public static final int MAX_SCORE = (1 << 21) - 1;
+  static final int ENTRY_BYTES = 16;
+  static final int NO_ROW = Short.MIN_VALUE;
+
+  private final long slots[];          // check, data, check, data per bucket
+  private final int mask;              // Buckets - 1
+
+  private final LongAdder probes = new LongAdder(), hits = new LongAdder();
+  private final LongAdder collisions = new LongAdder();
+  private final LongAdder stores = new LongAdder(), overwrites = new LongAdder();
+
+  // Construct a table using at most the given number of megabytes. The
+  // number of buckets is the largest power of 2 that fits.
+  // @throws IllegalArgumentException if megabytes is not between 1 and 16384.
+  public TranspositionTable(int megabytes){
+    if (megabytes < 1 || megabytes > 16384)
+      throw new IllegalArgumentException("Table size must be between 1 and 16384 MB: "+megabytes);
+    long buckets = Long.highestOneBit(((long) megabytes << 20) / (2*ENTRY_BYTES));
+    buckets = Math.min(buckets, 1 << 28);                 // Keeps the long[] under 2^31 elements
+    this.slots = new long[(int) (4*buckets)];
+    this.mask = (int) buckets - 1;
+  }
+
+  // Return the number of entries the table can hold
+  public int size(){
+    return 2*(mask + 1);
+  }
+
+  // Return the size of the table's array in bytes
+  public long memoryBytes(){
+    return 8L*slots.length;
+  }
+
+  // Return the data word for the position with hash key, or MISS if
+  // the table holds none. Decode it with depth(), bound(), score()
+  // and move().
+  //
+  // Complexity: O(1), no allocation
+  public long probe(long key){
+    probes.increment();
+    int at = 4*((int) key & mask);
+    boolean occupied = false;
+    for (int i = at; i < at + 4; i += 2){
+      long data = slots[i+1];
+      if (data == MISS)
+        continue;
+      if ((slots[i] ^ data) == key){
+        hits.increment();
+        return data;
+      }
+      occupied = true;
+    }
+    if (occupied)
+      collisions.increment();
+    return MISS;
+  }
+
+  // Record the result of a search of depth plies of the position with
+  // hash key: score with the given bound and the best move, a packed
+  // row/col or -1 for none. Moves with a row or column beyond 16 bits
+  // are stored as none.
+  // @throws IllegalArgumentException if depth or score is out of range.
+  //
+  // Complexity: O(1), no allocation
+  public void store(long key, int depth, int score, int bound, long move){
+    if (depth < 0 || depth > MAX_DEPTH)
+      throw new IllegalArgumentException("Depth out of range: "+depth);
+    if (score < -MAX_SCORE || score > MAX_SCORE)
+      throw new IllegalArgumentException("Score out of range: "+score);
+    stores.increment();
+    long data = pack(depth, score, bound, move);
+    int at = 4*((int) key & mask);
+
+    long prev = slots[at+1];
+    boolean same = prev != MISS && (slots[at] ^ prev) == key;
+    int i;
+    if (same || prev == MISS || depth >= depth(prev)){
+      i = at;                                              // Depth-preferred entry
+    }
+    else{
+      i = at + 2;                                          // Always-replace entry
+      prev = slots[i+1];
+      same = prev != MISS && (slots[i] ^ prev) == key;
+    }
+    if (prev != MISS && !same)
+      overwrites.increment();
+    slots[i] = key ^ data;
+    slots[i+1] = data;
+  }
+
+  // Pack an entry's fields into a data word
+  static long pack(int depth, int score, int bound, long move){
+    int row = NO_ROW, col = 0;
+    if (move != -1){
+      int r = RowColIndex.keyRow(move), c = RowColIndex.keyCol(move);
+      if (r > NO_ROW && r <= Short.MAX_VALUE && c >= Short.MIN_VALUE && c <= Short.MAX_VALUE){
+        row = r;
+        col = c;
+      }
+    }
+    return ((long) (row & 0xFFFF) << 48) | ((long) (col & 0xFFFF) << 32)
+      | ((long) (score & 0x3FFFFF) << 10) | (depth << 2) | (bound + 1);
+  }
+
+  // Fields of a data word returned by probe()
+  public static int depth(long data){
+    return (int) (data >>> 2) & 0xFF;
+  }
+
+  public static int bound(long data){
+    return (int) (data & 3) - 1;
+  }
+
+  public static int score(long data){
+    return (int) (data << 32 >> 42);
+  }
+
+  // The packed row/col of the move, or -1 if there is none
+  public static long move(long data){
+    int row = (short) (data >>> 48);
+    return (row == NO_ROW) ? -1 : RowColIndex.key(row, (short) (data >>> 32));
+  }
+
+  // Empty the table and reset its statistics
+  public void clear(){
+    java.util.Arrays.fill(slots, 0);
+    probes.reset();
+    hits.reset();
+    collisions.reset();
+    stores.reset();
+    overwrites.reset();
+  }
+
+  // Statistics since construction or the last clear(). Counts are
+  // exact once threads using the table have finished.
+  public long getProbes(){
+    return probes.sum();
+  }
+
+  public long getHits(){
+    return hits.sum();
+  }
+
+  // Probes which found only other positions in the bucket
+  public long getCollisions(){
+    return collisions.sum();
+  }
+
+  public long getStores(){
+    return stores.sum();
+  }
+
+  // Stores which replaced another position's entry
+  public long getOverwrites(){
+    return overwrites.sum();
+  }
+
+  // Fraction of probes which found their position, 0 if none
+  public double getHitRate(){
+    return rate(getHits(), getProbes());
+  }
+
+  // Fraction of probes which found only other positions, 0 if none
+  public double getCollisionRate(){
+    return rate(getCollisions(), getProbes());
+  }
+
+  // Fraction of stores which replaced another position, 0 if none
+  public double getOverwriteRate(){
+    return rate(getOverwrites(), getStores());
+  }
+
+  // One line summary of the statistics
+  public String getReport(){
+    return String.format("hits %.1f%% collisions %.1f%% of %d probes, overwrites %.1f%% of %d stores",
+                         100*getHitRate(), 100*getCollisionRate(), getProbes(),
+                         100*getOverwriteRate(), getStores());
+  }
+
+  private static double rate(long n, long of){
+    return (of == 0) ? 0.0 : (double) n / of;
+  }
+}
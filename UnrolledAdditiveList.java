@@ -0,0 +1,525 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.ConcurrentModificationException;
+
+// UnrolledAdditiveList class provides the operations of AdditiveList
+// (adds at any index, a ListIterator which can add, and undo()/redo()
+// of additions) but stores up to chunkSize elements per node in a
+// small array.  Traversals touch one node per chunk rather than one
+// per element and each element costs roughly one array slot rather
+// than a three field node, so iteration is faster and the list is
+// smaller.
+//
+// Undo relies on history being undone in stack order: each undo
+// exactly reverses the most recent remaining add, including any chunk
+// split it caused, so the chunk and offset recorded for an add are
+// still where its element lives when it is undone.  A redo reapplies
+// the add to the same chunk and offset, reusing the chunk it split
+// off, so records deeper in the history stay valid.
+//
+// Only the first chunk may be empty; every other chunk holds at least
+// one element.  The history holds one small record per add that can
+// be undone; a bounded maxUndo or clearHistory() releases them.
+//
+//  Space Complexity: O(N + N/B)
+//  N: The number of elements in the list
+//  B: The chunk size
+public class UnrolledAdditiveList<T> implements Iterable<T>{
+
+  public static final int DEFAULT_CHUNK_SIZE = 32;
+
+  // A node of the list holding items[0..count-1]
+  static class Chunk{
+    Object items[];
+    int count;
+    Chunk prev, next;
+    Chunk( int size ){
+      items = new Object[ size ];
+    }
+  }
+
+  // Record of one add: the element was inserted at offset off of
+  // chunk. If chunk was full, split is the chunk created after it to
+  // hold part of its elements. data holds the element only while it
+  // is waiting to be added or redone.
+  static class Edit{
+    Chunk chunk, split;
+    int off;
+    Object data;
+    Edit( Chunk chunk, int off ){
+      this.chunk = chunk;
+      this.off = off;
+    }
+  }
+
+  protected final int chunkSize;
+  protected int theSize;          // Tracks the size of the list
+  protected Chunk first, last;    // Ends of the chunk list
+  protected int modCount = 0;     // Tracks modifications for iterators
+
+  protected RingStack<Edit> undoable;
+  protected RingStack<Edit> redoable;
+
+  // Construct an empty list with unlimited undo history.
+  public UnrolledAdditiveList( ){
+    this( RingStack.UNLIMITED, DEFAULT_CHUNK_SIZE );
+  }
+
+  // Construct an empty list which can undo at most the maxUndo most
+  // recent adds and stores up to chunkSize elements per node.
+  // @throws IllegalArgumentException if maxUndo is not positive or
+  // chunkSize is less than 2.
+  public UnrolledAdditiveList( int maxUndo, int chunkSize ){
+    if( chunkSize < 2 )
+      throw new IllegalArgumentException( "Chunk size must be at least 2: " + chunkSize );
+    this.chunkSize = chunkSize;
+    this.undoable = new RingStack<Edit>( maxUndo );
+    this.redoable = new RingStack<Edit>( maxUndo );
+    this.first = this.last = new Chunk( chunkSize );
+    this.theSize = 0;
+    this.modCount++;
+  }
+
+  // Returns the number of items in this collection.
+  public int size( ){
+    return this.theSize;
+  }
+
+  // Tests if this collection is empty.
+  public boolean isEmpty( ){
+    return size( ) == 0;
+  }
+
+  // Tests if some item is in this collection.
+  //
+  // Complexity: O(N)
+  public boolean contains( Object x ){
+    for( Chunk c = first; c != null; c = c.next )
+      for( int i = 0; i < c.count; i++ )
+        if( isEqual( x, c.items[ i ] ) )
+          return true;
+    return false;
+  }
+
+  // Adds an item to this collection, at specified position.
+  // Items at or after that position are slid one position higher.
+  // @throws IndexOutOfBoundsException if idx is not between 0 and size(), inclusive.
+  //
+  // Complexity: O(N/B + B)
+  public void add( int idx, T x ){
+    Edit e = locate( idx );
+    e.data = x;
+    insert( e );
+    record( e );
+  }
+
+  // Adds all item in given iterable collection to the end of this
+  // collection.
+  // @return true if any items were added.
+  public boolean addAll( Iterable<T> c ){
+    boolean added = false;
+    for( T thing : c ){
+      added |= this.add( thing );
+    }
+    return added;
+  }
+
+  // Adds an item to this collection, at the end.
+  // @return true.
+  //
+  // Complexity: O(B)
+  public boolean add( T x ){
+    addLast( x );
+    return true;
+  }
+
+  // Adds an item to this collection, at front.
+  public void addFirst( T x ){
+    add( 0, x );
+  }
+
+  // Adds an item to this collection, at end.
+  public void addLast( T x ){
+    add( size( ), x );
+  }
+
+  // Returns the first item in the list.
+  public T getFirst( ){
+    if( isEmpty( ) )
+      throw new RuntimeException( "List is empty" );
+    return get( 0 );
+  }
+
+  // Returns the last item in the list.
+  public T getLast( ){
+    if( isEmpty( ) )
+      throw new RuntimeException( "List is empty" );
+    return get( size( ) - 1 );
+  }
+
+  // Returns the item at position idx.
+  // @throws IndexOutOfBoundsException if index is out of range.
+  //
+  // Complexity: O(N/B)
+  @SuppressWarnings("unchecked")
+  public T get( int idx ){
+    if( idx < 0 || idx >= size( ) )
+      throw new IndexOutOfBoundsException( "get index: " + idx + "; size: " + size( ) );
+    Edit e = locate( idx );
+    return (T) e.chunk.items[ e.off ];
+  }
+
+  // Find the chunk and offset of position idx, which must range from
+  // 0 to size(), walking from whichever end of the list is closer.
+  // Position size() is the end of the last chunk.
+  protected Edit locate( int idx ){
+    if( idx < 0 || idx > size( ) )
+      throw new IndexOutOfBoundsException( "locate index: " + idx + "; size: " + size( ) );
+    Chunk c;
+    int start;
+    if( idx < size( ) / 2 ){
+      c = first;
+      start = 0;
+      while( idx >= start + c.count ){
+        start += c.count;
+        c = c.next;
+      }
+    }
+    else{
+      c = last;
+      start = size( ) - c.count;
+      while( idx < start ){
+        c = c.prev;
+        start -= c.count;
+      }
+    }
+    return new Edit( c, idx - start );
+  }
+
+  // Perform the add recorded in e. A full chunk is split first: when
+  // adding past its end a new empty chunk follows it, otherwise the
+  // upper half of its elements move to the new chunk. A redo reuses
+  // the chunk split off by the original add.
+  protected void insert( Edit e ){
+    Chunk c = e.chunk;
+    int off = e.off;
+    if( c.count < chunkSize ){
+      insertInto( c, off, e.data );
+    }
+    else{
+      int h = splitPoint( off );
+      Chunk d = ( e.split != null ) ? e.split : new Chunk( chunkSize );
+      e.split = d;
+      d.prev = c;
+      d.next = c.next;
+      if( c.next != null )
+        c.next.prev = d;
+      else
+        last = d;
+      c.next = d;
+      System.arraycopy( c.items, h, d.items, 0, chunkSize - h );
+      Arrays.fill( c.items, h, chunkSize, null );
+      d.count = chunkSize - h;
+      c.count = h;
+      if( off > h || off == chunkSize )
+        insertInto( d, off - h, e.data );
+      else
+        insertInto( c, off, e.data );
+    }
+    e.data = null;
+    theSize++;
+    modCount++;
+  }
+
+  // Reverse insert(e), which must be the most recent remaining add
+  protected void remove( Edit e ){
+    Chunk c = e.chunk, d = e.split;
+    int off = e.off;
+    if( d == null ){
+      e.data = removeFrom( c, off );
+    }
+    else{
+      int h = splitPoint( off );
+      if( off > h || off == chunkSize )
+        e.data = removeFrom( d, off - h );
+      else
+        e.data = removeFrom( c, off );
+      System.arraycopy( d.items, 0, c.items, c.count, d.count );
+      Arrays.fill( d.items, 0, d.count, null );
+      c.count += d.count;
+      d.count = 0;
+      c.next = d.next;
+      if( d.next != null )
+        d.next.prev = c;
+      else
+        last = c;
+    }
+    theSize--;
+    modCount++;
+  }
+
+  // Number of elements a full chunk keeps when an add at off splits it
+  private int splitPoint( int off ){
+    return ( off == chunkSize ) ? chunkSize : chunkSize / 2;
+  }
+
+  // Insert x at offset off of a chunk with room
+  private static void insertInto( Chunk c, int off, Object x ){
+    System.arraycopy( c.items, off, c.items, off + 1, c.count - off );
+    c.items[ off ] = x;
+    c.count++;
+  }
+
+  // Remove and return the element at offset off of a chunk
+  private static Object removeFrom( Chunk c, int off ){
+    Object x = c.items[ off ];
+    System.arraycopy( c.items, off + 1, c.items, off, c.count - off - 1 );
+    c.items[ --c.count ] = null;
+    return x;
+  }
+
+  // Push a completed add onto the history and discard redo history
+  private void record( Edit e ){
+    undoable.push( e );
+    redoable.clear( );
+  }
+
+  // Return true if items in other collection are equal to items in
+  // this collection (same order, and same according to equals).
+  public boolean equals( Object other ){
+    if( other == this )
+      return true;
+
+    if( ! ( other instanceof UnrolledAdditiveList ) )
+      return false;
+
+    UnrolledAdditiveList<?> rhs = (UnrolledAdditiveList<?>) other;
+    if( size( ) != rhs.size( ) )
+      return false;
+
+    Iterator<T> lhsItr = this.iterator( );
+    Iterator<?> rhsItr = rhs.iterator( );
+
+    while( lhsItr.hasNext( ) )
+      if( !isEqual( lhsItr.next( ), rhsItr.next( ) ) )
+        return false;
+
+    return true;
+  }
+
+  // Return true if two objects are equal; works if objects can be
+  // null.
+  protected boolean isEqual( Object lhs, Object rhs ){
+    if( lhs == null )
+      return rhs == null;
+    return lhs.equals( rhs );
+  }
+
+  // Return a hashCode for the list, the same as AdditiveList's.
+  public final int hashCode( ){
+    int hashVal = 1;
+    for( Chunk c = first; c != null; c = c.next )
+      for( int i = 0; i < c.count; i++ )
+        hashVal = 31 * hashVal + ( c.items[ i ] == null ? 0 : c.items[ i ].hashCode( ) );
+    return hashVal;
+  }
+
+  // Return a string representation of the list in the format of
+  // other java lists.
+  public String toString( ){
+    StringBuilder result = new StringBuilder( "[" );
+    for( Chunk c = first; c != null; c = c.next ){
+      for( int i = 0; i < c.count; i++ ){
+        result.append( c.items[ i ] );
+        result.append( ", " );
+      }
+    }
+    if( !this.isEmpty( ) ){
+      result.delete( result.length( ) - 2, result.length( ) );
+    }
+    result.append( "]" );
+    return result.toString( );
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////
+  // Undo/Redo methods
+  //
+  // Undo the most recent add which has not been undone. Throws a
+  // RuntimeException with the message "Undo history is empty" if no
+  // adds remain to be undone.
+  //
+  // Complexity: O(B)
+  public void undo(){
+    if( undoable.isEmpty( ) ){
+      throw new RuntimeException( "Undo history is empty" );
+    }
+    Edit e = undoable.topAndPop( );
+    remove( e );
+    redoable.push( e );
+  }
+
+  // Redo an add which has been undone using undo(). Throws a
+  // RuntimeException with the message "Redo history is empty" if no
+  // adds remain to be redone.
+  //
+  // Complexity: O(B)
+  public void redo(){
+    if( redoable.isEmpty( ) ){
+      throw new RuntimeException( "Redo history is empty" );
+    }
+    Edit e = redoable.topAndPop( );
+    insert( e );
+    undoable.push( e );
+  }
+
+  // Return true if any adds to the list can be undone and false
+  // otherwise.
+  public boolean canUndo(){
+    return !undoable.isEmpty( );
+  }
+
+  // Return true if any adds to the list can be redone and false
+  // otherwise.
+  public boolean canRedo(){
+    return !redoable.isEmpty( );
+  }
+
+  // Clears the history of all adds; subsequently cannot undo or redo
+  // until more adds have been made.
+  public void clearHistory(){
+    undoable.clear( );
+    redoable.clear( );
+  }
+
+  // Return the maximum number of adds that can be undone
+  public int getMaxUndo(){
+    return undoable.getMaxSize( );
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////
+  // Iteration Methods
+  //
+  // Obtains an Iterator object used to traverse the collection.
+  public Iterator<T> iterator( ){
+    return new UListIterator( 0 );
+  }
+
+  // Obtains a ListIterator object positioned prior to the first
+  // element.
+  public ListIterator<T> listIterator( ){
+    return new UListIterator( 0 );
+  }
+
+  // Obtains a ListIterator object positioned prior to the element at
+  // idx.
+  // @throws IndexOutOfBoundsException if idx is not between 0 and size(), inclusive.
+  public ListIterator<T> listIterator( int idx ){
+    return new UListIterator( idx );
+  }
+
+  // ListIterator for the UnrolledAdditiveList. The position is before
+  // items[off] of chunk, with off == chunk.count meaning the start of
+  // the next chunk. Changes to the list other than through this
+  // iterator's add(x) cause a ConcurrentModificationException.
+  public class UListIterator implements ListIterator<T>{
+    protected Chunk chunk;                     // Chunk holding the next element
+    protected int off;                         // Offset of the next element in chunk
+    protected int index;                       // Index of the next element
+    protected int expectedModCount = modCount; // How many modifications iterator expects
+
+    // Construct an iterator
+    public UListIterator( int idx ){
+      Edit e = UnrolledAdditiveList.this.locate( idx );
+      chunk = e.chunk;
+      off = e.off;
+      index = idx;
+    }
+
+    // Can the iterator be moved to the next() element
+    public boolean hasNext( ){
+      if( expectedModCount != modCount )
+        throw new ConcurrentModificationException( );
+      return index < theSize;
+    }
+
+    // Move the iterator forward and return the passed-over element
+    //
+    // Complexity: O(1)
+    @SuppressWarnings("unchecked")
+    public T next( ){
+      if( !hasNext( ) )
+        throw new RuntimeException( "Already at end of list" );
+      if( off == chunk.count ){
+        chunk = chunk.next;
+        off = 0;
+      }
+      index++;
+      return (T) chunk.items[ off++ ];
+    }
+
+    // Can the iterator be moved with previous()
+    public boolean hasPrevious( ){
+      if( expectedModCount != modCount )
+        throw new ConcurrentModificationException( );
+      return index > 0;
+    }
+
+    // Move the iterator backward and return the passed-over element
+    //
+    // Complexity: O(1)
+    @SuppressWarnings("unchecked")
+    public T previous( ){
+      if( !hasPrevious( ) )
+        throw new RuntimeException( "Already at beginning of list" );
+      if( off == 0 ){
+        chunk = chunk.prev;
+        off = chunk.count;
+      }
+      index--;
+      return (T) chunk.items[ --off ];
+    }
+
+    // Add x to the list before the element that would be returned by
+    // a call to next(); a following previous() returns x. The add can
+    // be undone with the list's undo().
+    //
+    // Complexity: O(B)
+    public void add( T x ){
+      if( expectedModCount != modCount )
+        throw new ConcurrentModificationException( );
+      Edit e = new Edit( chunk, off );
+      e.data = x;
+      insert( e );
+      record( e );
+      if( e.split != null && ( off > splitPoint( off ) || off == chunkSize ) ){
+        chunk = e.split;
+        off -= splitPoint( off );
+      }
+      off++;
+      index++;
+      expectedModCount = modCount;
+    }
+
+    // Return the integer index associated with the element that would
+    // be returned by next()
+    public int nextIndex(){
+      return index;
+    }
+
+    // Return the integer index associated with the element that would
+    // be returned by previous()
+    public int previousIndex(){
+      return index - 1;
+    }
+
+    // The following operations are part of the ListIterator interface
+    // but are not supported by AdditiveLists or their iterators.
+    public void set( T x ){
+      throw new UnsupportedOperationException( );
+    }
+    public void remove( ){
+      throw new UnsupportedOperationException( );
+    }
+  }
+}
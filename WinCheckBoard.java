@@ -0,0 +1,28 @@
+// An ExpandableBoard which can test for a win around a single cell.
+// Games need to know after each move whether that move completed a
+// run of the winning length; getLongestSequence() answers that but
+// builds a new list every time, while checkWinAt() looks only along
+// the four lines through the cell and allocates nothing.
+
+public interface WinCheckBoard<T> extends ExpandableBoard<T> {
+
+  // checkWinAt(row,col,k)
+  //
+  // Return true if the element at row,col is part of a horizontal,
+  // vertical or diagonal run of at least k equal elements. Returns
+  // false if the cell has not been set. Only runs through row,col are
+  // considered, so call it with the position of the last element set.
+  //
+  // Target Complexity: O(k), no allocation
+  public boolean checkWinAt(int row, int col, int k);
+
+  // getZobristHash()
+  //
+  // Return a 64-bit hash of the elements on the board, the XOR of
+  // Zobrist.key() of each, kept current by set(), undoSet() and
+  // redoSet(). Searches use it to recognise positions they have seen
+  // before. The fill element and extent are not hashed.
+  //
+  // Target Complexity: O(1)
+  public long getZobristHash();
+}
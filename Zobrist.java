@@ -0,0 +1,30 @@
+// Zobrist keys for board positions.  A position's hash is the XOR of
+// the keys of its set elements, so a board can keep it current by
+// XORing one key in on set or redo and out again on undo.  Boards are
+// unbounded, so rather than drawing keys from a fixed random table
+// the key of an element is computed by mixing its packed row/col with
+// its palette code.
+//
+// The mixing is applied twice, to the coordinate and then to the
+// coordinate's mix combined with the code, so keys are not the XOR of
+// a coordinate part and an element part; such keys would give the
+// same hash for positions which differ by swapping elements between
+// two cells.
+public class Zobrist{
+
+  static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+  // Return the key for the element with palette code at row/col
+  //
+  // Complexity: O(1)
+  public static long key(int row, int col, int code){
+    return mix(mix(RowColIndex.key(row,col)) + (code + 1)*GOLDEN);
+  }
+
+  // The splitmix64 finalizer, a bijection with good avalanche
+  static long mix(long z){
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}